@@ -0,0 +1,76 @@
+const { parentPort } = require('worker_threads');
+const CodeSmellDetector = require('./detector');
+
+// Detectors are kept per config, and the decoded lines of the file being
+// analyzed are reused by every task that file was split into. Function and
+// class metadata come with each task from the main thread's parse; workers
+// never parse the file themselves.
+const detectors = new Map();
+let current = { jobId: null };
+
+function prepare(job) {
+  if (current.jobId === job.id) return current;
+
+  const key = JSON.stringify(job.config);
+  if (!detectors.has(key)) {
+    detectors.set(key, new CodeSmellDetector(job.config));
+  }
+
+  // The source arrives as a SharedArrayBuffer, so only this decode copies it
+  const content = Buffer.from(job.source).toString('utf8');
+  current = {
+    jobId: job.id,
+    detector: detectors.get(key),
+    content,
+    lines: content.split('\n'),
+    bodies: new Map(),
+    blocks: null
+  };
+  return current;
+}
+
+// Tasks carry functions and classes without bodies; each body is cut out of the
+// decoded lines once per job, exactly as parseFile extracted it
+function withContent(state, records) {
+  return records.map(record => {
+    const key = `${record.startLine}:${record.endLine}`;
+    if (!state.bodies.has(key)) {
+      state.bodies.set(key, state.lines.slice(record.startLine - 1, record.endLine).join('\n'));
+    }
+    return { ...record, content: state.bodies.get(key) };
+  });
+}
+
+async function runTask(job, task) {
+  const state = prepare(job);
+  const { detector, content } = state;
+  const parseResult = {
+    content,
+    lines: state.lines,
+    language: job.language,
+    functions: withContent(state, (task.parse && task.parse.functions) || []),
+    classes: withContent(state, (task.parse && task.parse.classes) || [])
+  };
+
+  switch (task.type) {
+    case 'analyzer':
+      return detector.analyzers[task.smellType].analyze(parseResult, content, job.filePath);
+    case 'duplicatedFunctions':
+      return detector.analyzers.DuplicatedCode.findDuplicatedFunctions(parseResult.functions, task.rowStart, task.rowEnd);
+    case 'duplicatedBlocks': {
+      const analyzer = detector.analyzers.DuplicatedCode;
+      if (!state.blocks) state.blocks = analyzer.normalizeBlocks(parseResult.lines);
+      return analyzer.findDuplicatedBlocksInRows(state.blocks, task.rowStart, task.rowEnd);
+    }
+    default:
+      throw new Error(`Unknown task type ${task.type}`);
+  }
+}
+
+parentPort.on('message', async ({ id, job, task }) => {
+  try {
+    parentPort.postMessage({ id, smells: await runTask(job, task) });
+  } catch (error) {
+    parentPort.postMessage({ id, error: error.message });
+  }
+});
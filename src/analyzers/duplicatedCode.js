@@ -1,57 +1,135 @@
+const SmellRules = require('../smellRules');
+
+// Lowest similarity measure() records, so thresholds below it cannot be
+// re-applied to its metrics. Each step down widens the Levenshtein band for
+// every pair; at 0.5 measuring took about four times as long as at 0.7.
+const METRICS_FLOOR = 0.7;
+
 class DuplicatedCodeAnalyzer {
   constructor(thresholds) {
-    this.similarityThreshold = thresholds.DuplicatedCodeSimilarity || 0.8;
+    this.similarityThreshold = thresholds.DuplicatedCodeSimilarity || SmellRules.DEFAULT_THRESHOLDS.DuplicatedCodeSimilarity;
     this.minLineCount = 5; // Minimum lines to consider for duplication
+    this.admit = null;
   }
 
   async analyze(parseResult, content, filePath) {
+    const smells = this.findDuplicatedFunctions(parseResult.functions);
+    
+    // Also check for duplicated code blocks within the same function
+    const blockDuplicates = this.findDuplicatedBlocks(parseResult.lines);
+    smells.push(...blockDuplicates);
+    
+    return smells;
+  }
+
+  // Threshold-independent similarities of every function pair and block pair
+  // scoring at least METRICS_FLOOR (or the threshold, if lower), for SmellRules.
+  // Overlapping block matches are kept; SmellRules skips them per threshold.
+  measure(parseResult) {
+    const floor = Math.min(METRICS_FLOOR, this.similarityThreshold);
+    const reaches = (normalized1, normalized2) => this.similarityUpperBound(normalized1, normalized2) >= floor;
+    const functions = [];
+    const blocks = [];
+
+    const eligible = parseResult.functions.filter(func => func.lineCount >= this.minLineCount);
+    const normalized = eligible.map(func => this.normalizeContent(func.content));
+    for (let i = 0; i < eligible.length; i++) {
+      for (let j = i + 1; j < eligible.length; j++) {
+        if (!reaches(normalized[i], normalized[j])) continue;
+        const similarity = this.calculateSimilarity(normalized[i], normalized[j], floor);
+        if (similarity < floor) continue;
+
+        const [first, second] = [eligible[i], eligible[j]].map(func => ({
+          name: func.name,
+          startLine: func.startLine,
+          endLine: func.endLine
+        }));
+        functions.push({ first, second, similarity });
+      }
+    }
+
+    const normalizedBlocks = this.normalizeBlocks(parseResult.lines);
+    for (let i = 0; i < normalizedBlocks.length; i++) {
+      if (normalizedBlocks[i] === null) continue;
+
+      for (let j = i + this.minLineCount; j < normalizedBlocks.length; j++) {
+        if (normalizedBlocks[j] === null || !reaches(normalizedBlocks[i], normalizedBlocks[j])) continue;
+        const similarity = this.calculateSimilarity(normalizedBlocks[i], normalizedBlocks[j], floor);
+        if (similarity >= floor) blocks.push({ i, j, similarity });
+      }
+    }
+
+    return { floor, blockSize: this.minLineCount, functions, blocks };
+  }
+
+  // rowStart/rowEnd restrict the outer loop so the pairwise comparisons can be
+  // sharded across workers; concatenating shards in row order gives the same
+  // result as one full pass
+  findDuplicatedFunctions(functions, rowStart = 0, rowEnd = functions.length) {
     const smells = [];
-    const functions = parseResult.functions;
     
     // Compare all function pairs
-    for (let i = 0; i < functions.length; i++) {
+    for (let i = rowStart; i < rowEnd; i++) {
       for (let j = i + 1; j < functions.length; j++) {
-        const func1 = functions[i];
-        const func2 = functions[j];
-        
-        if (func1.lineCount >= this.minLineCount && func2.lineCount >= this.minLineCount) {
-          const similarity = this.calculateSimilarity(func1.content, func2.content);
-          
-          if (similarity >= this.similarityThreshold) {
-            smells.push({
-              type: 'DuplicatedCode',
-              lines: `${func1.startLine}-${func1.endLine}, ${func2.startLine}-${func2.endLine}`,
-              description: `Functions '${func1.name}()' and '${func2.name}()' have ${Math.round(similarity * 100)}% similarity.`,
-              details: `Code duplication detected between two functions`,
-              severity: this.calculateSeverity(similarity),
-              function1: func1.name,
-              function2: func2.name,
-              similarity: similarity,
-              threshold: this.similarityThreshold
-            });
-          }
+        const smell = this.compareFunctions(functions[i], functions[j]);
+        if (smell) {
+          smells.push(smell);
         }
       }
     }
     
-    // Also check for duplicated code blocks within the same function
-    const blockDuplicates = this.findDuplicatedBlocks(parseResult.lines);
-    smells.push(...blockDuplicates);
-    
     return smells;
   }
 
-  calculateSimilarity(content1, content2) {
+  compareFunctions(func1, func2) {
+    if (func1.lineCount < this.minLineCount || func2.lineCount < this.minLineCount) {
+      return null;
+    }
+
+    const normalized1 = this.normalizeContent(func1.content);
+    const normalized2 = this.normalizeContent(func2.content);
+    if (!this.canReachThreshold(normalized1, normalized2)) {
+      return null;
+    }
+
+    const similarity = this.calculateSimilarity(normalized1, normalized2, this.similarityThreshold);
+    return SmellRules.duplicatedFunctions(
+      { first: func1, second: func2, similarity },
+      { DuplicatedCodeSimilarity: this.similarityThreshold },
+      this.admit
+    );
+  }
+
+  // Levenshtein distance is at least the length difference, so the length
+  // ratio bounds the achievable similarity without running the DP
+  similarityUpperBound(normalized1, normalized2) {
+    const maxLength = Math.max(normalized1.length, normalized2.length);
+    if (maxLength === 0) return 1;
+    return Math.min(normalized1.length, normalized2.length) / maxLength;
+  }
+
+  canReachThreshold(normalized1, normalized2) {
+    const bound = this.similarityUpperBound(normalized1, normalized2);
+    if (bound < this.similarityThreshold) return false;
+
+    // In top-K mode, even a perfect score up to the bound must be able to rank
+    return !this.admit || this.admit(this.calculateSeverity(bound), bound / this.similarityThreshold);
+  }
+
+  // minSimilarity lets the distance computation stop early; scores below it
+  // are then only known to be below it
+  calculateSimilarity(content1, content2, minSimilarity = 0) {
     // Normalize content for comparison
     const normalized1 = this.normalizeContent(content1);
     const normalized2 = this.normalizeContent(content2);
     
     // Use Levenshtein distance ratio
-    const distance = this.levenshteinDistance(normalized1, normalized2);
     const maxLength = Math.max(normalized1.length, normalized2.length);
     
     if (maxLength === 0) return 1;
     
+    const maxDistance = Math.ceil((1 - minSimilarity) * maxLength);
+    const distance = this.levenshteinDistance(normalized1, normalized2, maxDistance);
     return 1 - (distance / maxLength);
   }
 
@@ -65,65 +143,93 @@ class DuplicatedCodeAnalyzer {
       .trim();
   }
 
-  levenshteinDistance(str1, str2) {
-    const matrix = [];
+  // Two rolling rows instead of the full matrix: block and function pairs are
+  // compared by the thousand, and allocating (n+1)*(m+1) cells each time dominated.
+  // Past maxDistance the exact value is not needed, so only the diagonal band
+  // |i - j| <= maxDistance is filled (cells outside it cost more anyway), and
+  // maxDistance + 1 is returned as soon as the result must exceed it.
+  levenshteinDistance(str1, str2, maxDistance = Infinity) {
+    if (Math.abs(str1.length - str2.length) > maxDistance) return maxDistance + 1;
     
-    for (let i = 0; i <= str2.length; i++) {
-      matrix[i] = [i];
-    }
+    const band = Math.min(maxDistance, Math.max(str1.length, str2.length));
+    const outside = band + 1;
+    let previous = new Uint32Array(str1.length + 1).fill(outside);
+    let current = new Uint32Array(str1.length + 1).fill(outside);
     
-    for (let j = 0; j <= str1.length; j++) {
-      matrix[0][j] = j;
+    for (let j = 0; j <= Math.min(str1.length, band); j++) {
+      previous[j] = j;
     }
     
     for (let i = 1; i <= str2.length; i++) {
-      for (let j = 1; j <= str1.length; j++) {
-        if (str2.charAt(i - 1) === str1.charAt(j - 1)) {
-          matrix[i][j] = matrix[i - 1][j - 1];
+      const char2 = str2.charCodeAt(i - 1);
+      const from = Math.max(1, i - band);
+      const to = Math.min(str1.length, i + band);
+      current[from - 1] = from === 1 && i <= band ? i : outside;
+      let rowMin = current[from - 1];
+      
+      for (let j = from; j <= to; j++) {
+        if (char2 === str1.charCodeAt(j - 1)) {
+          current[j] = previous[j - 1];
         } else {
-          matrix[i][j] = Math.min(
-            matrix[i - 1][j - 1] + 1,
-            matrix[i][j - 1] + 1,
-            matrix[i - 1][j] + 1
-          );
+          current[j] = Math.min(previous[j - 1], current[j - 1], previous[j]) + 1;
         }
+        if (current[j] < rowMin) rowMin = current[j];
       }
+      if (rowMin > maxDistance) return maxDistance + 1;
+      if (to < str1.length) current[to + 1] = outside;
+      [previous, current] = [current, previous];
     }
     
-    return matrix[str2.length][str1.length];
+    return Math.min(previous[str1.length], maxDistance + 1);
+  }
+
+  // Normalized sliding windows of code blocks; null marks empty or comment-only blocks
+  normalizeBlocks(lines) {
+    const blockSize = this.minLineCount;
+    const blocks = [];
+    
+    for (let i = 0; i <= lines.length - blockSize; i++) {
+      const normalized = this.normalizeContent(lines.slice(i, i + blockSize).join('\n'));
+      blocks.push(normalized.trim().length < 10 ? null : normalized);
+    }
+    
+    return blocks;
+  }
+
+  compareBlocks(blocks, i, j) {
+    const normalizedBlock1 = blocks[i];
+    const normalizedBlock2 = blocks[j];
+    if (normalizedBlock1 === null || normalizedBlock2 === null) return null;
+    if (!this.canReachThreshold(normalizedBlock1, normalizedBlock2)) return null;
+    
+    const similarity = this.calculateSimilarity(normalizedBlock1, normalizedBlock2, this.similarityThreshold);
+    return SmellRules.duplicatedBlocks(
+      { i, j, similarity },
+      this.minLineCount,
+      { DuplicatedCodeSimilarity: this.similarityThreshold },
+      this.admit
+    );
   }
 
   findDuplicatedBlocks(lines) {
+    const blocks = this.normalizeBlocks(lines);
+    return this.findDuplicatedBlocksInRows(blocks, 0, blocks.length);
+  }
+
+  // Each row only skips ahead within itself, so row ranges are independent
+  findDuplicatedBlocksInRows(blocks, rowStart, rowEnd) {
     const smells = [];
     const blockSize = this.minLineCount;
     
-    // Create sliding windows of code blocks
-    for (let i = 0; i <= lines.length - blockSize; i++) {
-      const block1 = lines.slice(i, i + blockSize);
-      const normalizedBlock1 = this.normalizeContent(block1.join('\n'));
-      
+    for (let i = rowStart; i < rowEnd; i++) {
       // Skip empty or comment-only blocks
-      if (normalizedBlock1.trim().length < 10) continue;
+      if (blocks[i] === null) continue;
       
-      for (let j = i + blockSize; j <= lines.length - blockSize; j++) {
-        const block2 = lines.slice(j, j + blockSize);
-        const normalizedBlock2 = this.normalizeContent(block2.join('\n'));
+      for (let j = i + blockSize; j < blocks.length; j++) {
+        const smell = this.compareBlocks(blocks, i, j);
         
-        if (normalizedBlock2.trim().length < 10) continue;
-        
-        const similarity = this.calculateSimilarity(normalizedBlock1, normalizedBlock2);
-        
-        if (similarity >= this.similarityThreshold) {
-          smells.push({
-            type: 'DuplicatedCode',
-            lines: `${i + 1}-${i + blockSize}, ${j + 1}-${j + blockSize}`,
-            description: `Code blocks have ${Math.round(similarity * 100)}% similarity.`,
-            details: `Duplicated code blocks detected`,
-            severity: this.calculateSeverity(similarity),
-            similarity: similarity,
-            blockSize: blockSize,
-            threshold: this.similarityThreshold
-          });
+        if (smell) {
+          smells.push(smell);
           
           // Skip overlapping blocks
           j += blockSize - 1;
@@ -135,13 +241,7 @@ class DuplicatedCodeAnalyzer {
   }
 
   calculateSeverity(similarity) {
-    if (similarity > 0.95) {
-      return 'high';
-    } else if (similarity > 0.9) {
-      return 'medium';
-    } else {
-      return 'low';
-    }
+    return SmellRules.duplicationSeverity(similarity);
   }
 }
 
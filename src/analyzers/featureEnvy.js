@@ -1,41 +1,48 @@
+const SmellRules = require('../smellRules');
+
+const CONTROL_KEYWORDS = new Set(['if', 'for', 'while', 'switch', 'catch', 'synchronized', 'return', 'new']);
+
 class FeatureEnvyAnalyzer {
-  constructor(thresholds) {
-    this.threshold = thresholds.FeatureEnvyThreshold || 3;
+  constructor(thresholds, symbolIndex = null) {
+    this.threshold = thresholds.FeatureEnvyThreshold || SmellRules.DEFAULT_THRESHOLDS.FeatureEnvyThreshold;
+    // Optional project-wide SymbolIndex; without it only this file's classes are known
+    this.symbolIndex = symbolIndex;
+    this.admit = null;
   }
 
   async analyze(parseResult, content, filePath) {
+    const limits = { FeatureEnvyThreshold: this.threshold };
     const smells = [];
     
-    // Analyze methods within classes
+    for (const method of this.measure(parseResult)) {
+      smells.push(...SmellRules.featureEnvy(method, limits, this.admit));
+    }
+    
+    return smells;
+  }
+
+  // Threshold-independent reference counts of every method that touches another
+  // class at all, for SmellRules
+  measure(parseResult) {
+    const methods = [];
+    
     for (const cls of parseResult.classes) {
-      const classMethods = this.extractMethodsFromClass(cls, parseResult);
-      
-      for (const method of classMethods) {
+      for (const method of this.extractMethodsFromClass(cls, parseResult)) {
         const externalReferences = this.findExternalReferences(method, cls, parseResult);
-        const ownReferences = this.findOwnClassReferences(method, cls);
+        if (Object.keys(externalReferences).length === 0) continue;
         
-        // Check if method uses more external class features than its own
-        for (const [externalClass, refCount] of Object.entries(externalReferences)) {
-          if (refCount >= this.threshold && refCount > ownReferences) {
-            smells.push({
-              type: 'FeatureEnvy',
-              lines: `${method.startLine}-${method.endLine}`,
-              description: `Method '${method.name}()' in class '${cls.name}' uses ${refCount} features from '${externalClass}' but only ${ownReferences} from its own class.`,
-              details: `Method shows feature envy towards external class`,
-              severity: this.calculateSeverity(refCount, ownReferences),
-              methodName: method.name,
-              className: cls.name,
-              enviedClass: externalClass,
-              externalReferences: refCount,
-              ownReferences: ownReferences,
-              threshold: this.threshold
-            });
-          }
-        }
+        methods.push({
+          methodName: method.name,
+          className: cls.name,
+          startLine: method.startLine,
+          endLine: method.endLine,
+          ownReferences: this.findOwnClassReferences(method, cls),
+          externalReferences: externalReferences
+        });
       }
     }
     
-    return smells;
+    return methods;
   }
 
   extractMethodsFromClass(cls, parseResult) {
@@ -43,7 +50,7 @@ class FeatureEnvyAnalyzer {
     
     // Find functions that belong to this class
     for (const func of parseResult.functions) {
-      if (func.startLine >= cls.startLine && func.endLine <= cls.endLine) {
+      if (func.startLine >= cls.startLine && func.endLine <= cls.endLine && !this.isPseudoMethod(func)) {
         methods.push(func);
       }
     }
@@ -51,9 +58,28 @@ class FeatureEnvyAnalyzer {
     return methods;
   }
 
+  // The Java extractor also matches "} else if (...) {" and "x = new Type(...);"
+  isPseudoMethod(func) {
+    if (CONTROL_KEYWORDS.has(func.name)) return true;
+    const firstLine = func.content.split('\n', 1)[0];
+    return new RegExp(`\\bnew\\s+${func.name}\\s*\\(`).test(firstLine);
+  }
+
+  // Without a project index only the classes declared in this file are known;
+  // guessing types from receiver names counted locals, keywords and numbers
+  fileIndex(parseResult) {
+    const classes = new Map(parseResult.classes.map(cls => [cls.name, cls]));
+    return {
+      hasClass: className => classes.has(className),
+      getClass: className => classes.get(className) || null
+    };
+  }
+
   findExternalReferences(method, ownClass, parseResult) {
     const externalRefs = {};
     const lines = method.content.split('\n');
+    const index = this.symbolIndex || this.fileIndex(parseResult);
+    const scope = this.buildScope(method, ownClass, index);
     
     for (const line of lines) {
       // Find object method calls and property accesses
@@ -73,8 +99,7 @@ class FeatureEnvyAnalyzer {
             continue;
           }
           
-          // Try to identify the class of the object
-          const objectClass = this.identifyObjectClass(objectName, ownClass, parseResult);
+          const objectClass = this.resolveObjectClass(objectName, scope, index);
           
           if (objectClass && objectClass !== ownClass.name) {
             if (!externalRefs[objectClass]) {
@@ -117,56 +142,56 @@ class FeatureEnvyAnalyzer {
     return ownRefs;
   }
 
-  identifyObjectClass(objectName, ownClass, parseResult) {
-    // Simple heuristic to identify object class
-    // This could be enhanced with more sophisticated type analysis
-    
-    // Check if it's a field of the current class
-    if (ownClass.fields.includes(objectName)) {
-      // Try to infer type from field declaration or usage
-      const classContent = ownClass.content;
-      const patterns = [
-        new RegExp(`${objectName}\\s*=\\s*new\\s+(\\w+)`, 'i'), // Java: field = new ClassName()
-        new RegExp(`${objectName}\\s*=\\s*(\\w+)\\(`, 'i'), // Python: field = ClassName()
-        new RegExp(`(\\w+)\\s+${objectName}\\s*[=;]`, 'i'), // Java: ClassName field = ...
-      ];
-      
-      for (const pattern of patterns) {
-        const match = classContent.match(pattern);
-        if (match) {
-          return match[1];
-        }
+  // Declared types of everything a method can dereference: own fields (from the
+  // index), parameters and local declarations. Built once per method.
+  buildScope(method, ownClass, index = this.symbolIndex) {
+    const scope = new Map();
+    const indexed = index.getClass(ownClass.name);
+    const fieldTypes = indexed ? indexed.fieldTypes : (ownClass.fieldTypes || {});
+    
+    for (const [fieldName, fieldType] of Object.entries(fieldTypes)) {
+      scope.set(fieldName, fieldType);
+    }
+    
+    for (const param of method.parameters || []) {
+      // Python: name: Type = default, Java: final Type<T> name
+      const annotated = param.match(/^\*{0,2}(\w+)\s*:\s*([\w.]+)/);
+      const declared = param.match(/([\w.]+)(?:<.*>)?(?:\[\])*\s+(\w+)$/);
+      if (annotated) {
+        scope.set(annotated[1], annotated[2].split('.').pop());
+      } else if (declared) {
+        scope.set(declared[2], declared[1].split('.').pop());
       }
     }
     
-    // Check if it's a parameter with type annotation
-    const paramPattern = new RegExp(`${objectName}\\s*:\\s*(\\w+)`, 'i');
-    const paramMatch = method.content.match(paramPattern);
-    if (paramMatch) {
-      return paramMatch[1];
+    const localPattern = /\b([A-Z]\w*)(?:<[^;=()]*>)?\s+(\w+)\s*[=;:]/g;
+    let match;
+    while ((match = localPattern.exec(method.content)) !== null) {
+      scope.set(match[2], match[1]);
     }
     
-    // Check if it's instantiated in the method
-    const newPattern = new RegExp(`${objectName}\\s*=\\s*(?:new\\s+)?(\\w+)\\s*\\(`, 'i');
-    const newMatch = method.content.match(newPattern);
-    if (newMatch) {
-      return newMatch[1];
+    // Python has no declarations; "name = ClassName(...)" is the closest thing
+    const constructedPattern = /\b(\w+)\s*=\s*(?:new\s+)?([A-Z]\w*)\s*\(/g;
+    while ((match = constructedPattern.exec(method.content)) !== null) {
+      if (!scope.has(match[1])) scope.set(match[1], match[2]);
     }
     
-    // Default: use the object name as class name (common convention)
-    return objectName.charAt(0).toUpperCase() + objectName.slice(1);
+    return scope;
   }
 
-  calculateSeverity(externalRefs, ownRefs) {
-    const ratio = externalRefs / Math.max(ownRefs, 1);
-    
-    if (ratio > 5) {
-      return 'high';
-    } else if (ratio > 2) {
-      return 'medium';
-    } else {
-      return 'low';
+  // Index-backed lookup: only members of known project classes count as envy
+  resolveObjectClass(objectName, scope, index = this.symbolIndex) {
+    const declaredType = scope.get(objectName);
+    if (declaredType) {
+      return index.hasClass(declaredType) ? declaredType : null;
     }
+    
+    // Static access such as Order.create()
+    return index.hasClass(objectName) ? objectName : null;
+  }
+
+  calculateSeverity(externalRefs, ownRefs) {
+    return SmellRules.featureEnvySeverity(externalRefs, ownRefs);
   }
 }
 
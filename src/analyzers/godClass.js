@@ -1,57 +1,93 @@
+const { measureCohesion } = require('../cohesion');
+const SmellRules = require('../smellRules');
+
 class GodClassAnalyzer {
   constructor(thresholds) {
-    this.methodThreshold = thresholds.GodClassMethods || 10;
-    this.fieldThreshold = thresholds.GodClassFields || 15;
+    this.methodThreshold = thresholds.GodClassMethods || SmellRules.DEFAULT_THRESHOLDS.GodClassMethods;
+    this.fieldThreshold = thresholds.GodClassFields || SmellRules.DEFAULT_THRESHOLDS.GodClassFields;
+    // LCOM4 at or above which a class is flagged for unrelated responsibilities
+    this.lcomThreshold = thresholds.GodClassLCOM4 || SmellRules.DEFAULT_THRESHOLDS.GodClassLCOM4;
+    this.admit = null;
   }
 
   async analyze(parseResult, content, filePath) {
+    const limits = this.limits();
     const smells = [];
     
-    for (const cls of parseResult.classes) {
-      const methodCount = cls.methods.length;
-      const fieldCount = cls.fields.length;
-      
-      let violations = [];
-      
-      if (methodCount > this.methodThreshold) {
-        violations.push(`${methodCount} methods (threshold: ${this.methodThreshold})`);
-      }
-      
-      if (fieldCount > this.fieldThreshold) {
-        violations.push(`${fieldCount} fields (threshold: ${this.fieldThreshold})`);
-      }
-      
-      if (violations.length > 0) {
-        smells.push({
-          type: 'GodClass',
-          lines: `${cls.startLine}-${cls.endLine}`,
-          description: `Class '${cls.name}' has too many responsibilities: ${violations.join(', ')}.`,
-          details: `Class complexity: ${methodCount} methods, ${fieldCount} fields`,
-          severity: this.calculateSeverity(methodCount, fieldCount),
-          className: cls.name,
-          methodCount: methodCount,
-          fieldCount: fieldCount,
-          methodThreshold: this.methodThreshold,
-          fieldThreshold: this.fieldThreshold
-        });
-      }
+    for (const cls of this.measure(parseResult)) {
+      const smell = SmellRules.godClass(cls, limits, this.admit);
+      if (smell) smells.push(smell);
     }
     
     return smells;
   }
 
-  calculateSeverity(methodCount, fieldCount) {
-    const methodRatio = methodCount / this.methodThreshold;
-    const fieldRatio = fieldCount / this.fieldThreshold;
-    const maxRatio = Math.max(methodRatio, fieldRatio);
+  // Threshold-independent size and cohesion of every class, for SmellRules
+  measure(parseResult) {
+    const classes = parseResult.classes;
+    const methodsByClass = this.groupMethodsByClass(classes, parseResult.functions || []);
     
-    if (maxRatio >= 2) {
-      return 'high';
-    } else if (maxRatio > 1.5) {
-      return 'medium';
-    } else {
-      return 'low';
+    return classes.map(cls => ({
+      name: cls.name,
+      startLine: cls.startLine,
+      endLine: cls.endLine,
+      methodCount: cls.methods.length,
+      fieldCount: cls.fields.length,
+      cohesion: this.measureClassCohesion(cls, methodsByClass.get(cls), parseResult.language)
+    }));
+  }
+
+  limits() {
+    return {
+      GodClassMethods: this.methodThreshold,
+      GodClassFields: this.fieldThreshold,
+      GodClassLCOM4: this.lcomThreshold
+    };
+  }
+
+  // Assign each extracted function to the innermost class whose lines contain it
+  groupMethodsByClass(classes, functions) {
+    const methodsByClass = new Map(classes.map(cls => [cls, []]));
+    
+    for (const func of functions) {
+      let owner = null;
+      for (const cls of classes) {
+        if (func.startLine < cls.startLine || func.startLine > cls.endLine) continue;
+        if (!owner || cls.endLine - cls.startLine < owner.endLine - owner.startLine) {
+          owner = cls;
+        }
+      }
+      if (owner) methodsByClass.get(owner).push(func);
     }
+    
+    return methodsByClass;
+  }
+
+  // null when method bodies are unavailable or there are too few methods to relate
+  measureClassCohesion(cls, methods, language) {
+    if (!methods || methods.length < 2) return null;
+    
+    // Constructors touch every field by design and would hide real splits, and
+    // one-line accessors would make every data class look fragmented
+    const constructorName = language === 'python' ? '__init__' : cls.name;
+    const bodies = methods
+      .filter(method => method.name !== constructorName && !this.isAccessor(method))
+      .map(method => ({ name: method.name, body: method.content }));
+    if (bodies.length < 2) return null;
+    
+    // Java field lists also catch locals; declared members are reliable
+    const fields = language === 'java' && cls.fieldTypes ? Object.keys(cls.fieldTypes) : cls.fields;
+    // Cohesion says nothing about stateless classes (services, utilities)
+    if (fields.length === 0) return null;
+    return measureCohesion(bodies, fields, language);
+  }
+
+  isAccessor(method) {
+    return /^(get|set|is|has)[A-Z_]/.test(method.name) && method.lineCount <= 3;
+  }
+
+  calculateSeverity(methodCount, fieldCount) {
+    return SmellRules.godClassSeverity(methodCount, fieldCount, this.limits());
   }
 }
 
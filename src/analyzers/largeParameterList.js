@@ -1,41 +1,35 @@
+const SmellRules = require('../smellRules');
+
 class LargeParameterListAnalyzer {
   constructor(thresholds) {
-    this.threshold = thresholds.LargeParameterList || 5;
+    this.threshold = thresholds.LargeParameterList || SmellRules.DEFAULT_THRESHOLDS.LargeParameterList;
+    this.admit = null;
   }
 
   async analyze(parseResult, content, filePath) {
+    const limits = { LargeParameterList: this.threshold };
     const smells = [];
-    
-    for (const func of parseResult.functions) {
-      const paramCount = func.parameters.length;
-      
-      if (paramCount > this.threshold) {
-        smells.push({
-          type: 'LargeParameterList',
-          lines: `${func.startLine}`,
-          description: `Function '${func.name}()' has ${paramCount} parameters (threshold: ${this.threshold}).`,
-          details: `Parameters: ${func.parameters.join(', ')}`,
-          severity: this.calculateSeverity(paramCount),
-          functionName: func.name,
-          parameterCount: paramCount,
-          parameters: func.parameters,
-          threshold: this.threshold
-        });
-      }
+
+    for (const func of this.measure(parseResult)) {
+      const smell = SmellRules.largeParameterList(func, limits, this.admit);
+      if (smell) smells.push(smell);
     }
-    
+
     return smells;
   }
 
+  // Threshold-independent parameter lists of every function, for SmellRules
+  measure(parseResult) {
+    return parseResult.functions.map(func => ({
+      name: func.name,
+      startLine: func.startLine,
+      parameters: func.parameters
+    }));
+  }
+
   calculateSeverity(paramCount) {
-    if (paramCount > this.threshold * 2) {
-      return 'high';
-    } else if (paramCount > this.threshold * 1.5) {
-      return 'medium';
-    } else {
-      return 'low';
-    }
+    return SmellRules.parameterListSeverity(paramCount, this.threshold);
   }
 }
 
-module.exports = LargeParameterListAnalyzer;
\ No newline at end of file
+module.exports = LargeParameterListAnalyzer;
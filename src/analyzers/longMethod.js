@@ -1,38 +1,51 @@
+const SmellRules = require('../smellRules');
+
 class LongMethodAnalyzer {
   constructor(thresholds) {
-    this.threshold = thresholds.LongMethod || 40;
+    this.threshold = thresholds.LongMethod || SmellRules.DEFAULT_THRESHOLDS.LongMethod;
+    this.cyclomaticThreshold = thresholds.LongMethodCyclomatic || SmellRules.DEFAULT_THRESHOLDS.LongMethodCyclomatic;
+    this.cognitiveThreshold = thresholds.LongMethodCognitive || SmellRules.DEFAULT_THRESHOLDS.LongMethodCognitive;
+    this.admit = null;
   }
 
   async analyze(parseResult, content, filePath) {
+    const limits = this.limits();
     const smells = [];
-    
-    for (const func of parseResult.functions) {
-      if (func.lineCount > this.threshold) {
-        smells.push({
-          type: 'LongMethod',
-          lines: `${func.startLine}-${func.endLine}`,
-          description: `Method '${func.name}()' exceeds ${this.threshold} lines (${func.lineCount} lines).`,
-          details: `Function has ${func.lineCount} lines, threshold is ${this.threshold}`,
-          severity: this.calculateSeverity(func.lineCount),
-          methodName: func.name,
-          actualLines: func.lineCount,
-          threshold: this.threshold
-        });
-      }
+
+    for (const func of this.measure(parseResult)) {
+      const smell = SmellRules.longMethod(func, limits, this.admit);
+      if (smell) smells.push(smell);
     }
-    
+
     return smells;
   }
 
+  // Threshold-independent size and complexity of every function, for SmellRules
+  measure(parseResult) {
+    return parseResult.functions.map(func => ({
+      name: func.name,
+      startLine: func.startLine,
+      endLine: func.endLine,
+      // Extracted functions carry logicalLines (honoring analysis.ignoreComments and
+      // ignoreEmptyLines) and complexity metrics; bare records only have lineCount
+      lineCount: func.logicalLines !== undefined ? func.logicalLines : func.lineCount,
+      cyclomaticComplexity: func.cyclomaticComplexity,
+      cognitiveComplexity: func.cognitiveComplexity,
+      maxNesting: func.maxNesting
+    }));
+  }
+
+  limits() {
+    return {
+      LongMethod: this.threshold,
+      LongMethodCyclomatic: this.cyclomaticThreshold,
+      LongMethodCognitive: this.cognitiveThreshold
+    };
+  }
+
   calculateSeverity(lineCount) {
-    if (lineCount > this.threshold * 2) {
-      return 'high';
-    } else if (lineCount > this.threshold * 1.5) {
-      return 'medium';
-    } else {
-      return 'low';
-    }
+    return SmellRules.severityForRatio(lineCount / this.threshold);
   }
 }
 
-module.exports = LongMethodAnalyzer;
\ No newline at end of file
+module.exports = LongMethodAnalyzer;
@@ -1,7 +1,13 @@
+// There is no threshold to divide by, so a line's magnitude is its count
+// relative to this: a lone number ranks below a smell just past its threshold,
+// and three or more (medium severity) rank like 1.5x a threshold and up
+const MAGIC_NUMBERS_PER_LINE = 2;
+
 class MagicNumbersAnalyzer {
   constructor(thresholds) {
     this.allowedNumbers = new Set([0, 1, -1, 2, 10, 100, 1000]); // Common acceptable numbers
     this.allowedDecimals = new Set(['0.0', '1.0', '-1.0', '2.0']); // Common acceptable decimals
+    this.admit = null;
   }
 
   async analyze(parseResult, content, filePath) {
@@ -20,12 +26,17 @@ class MagicNumbersAnalyzer {
       const magicNumbers = this.findMagicNumbers(line);
       
       if (magicNumbers.length > 0) {
+        const severity = this.calculateSeverity(magicNumbers.length);
+        const magnitude = magicNumbers.length / MAGIC_NUMBERS_PER_LINE;
+        if (this.admit && !this.admit(severity, magnitude)) continue;
+        
         smells.push({
           type: 'MagicNumbers',
           lines: `${lineNumber}`,
           description: `Magic numbers detected: ${magicNumbers.join(', ')}.`,
           details: `Consider defining these as named constants`,
-          severity: this.calculateSeverity(magicNumbers.length),
+          severity: severity,
+          magnitude: magnitude,
           magicNumbers: magicNumbers,
           lineContent: line.trim()
         });
@@ -35,6 +46,11 @@ class MagicNumbersAnalyzer {
     return smells;
   }
 
+  // No threshold applies, so the per-line findings are already the metrics
+  measure(parseResult, content, filePath) {
+    return this.analyze(parseResult, content, filePath);
+  }
+
   findMagicNumbers(line) {
     const magicNumbers = [];
     
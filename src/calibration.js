@@ -0,0 +1,182 @@
+const fs = require('fs');
+const TDigest = require('./tdigest');
+const DuplicatedCodeAnalyzer = require('./analyzers/duplicatedCode');
+
+const SKETCH_VERSION = 1;
+
+// Measurements streamed into one sketch each
+const METRICS = [
+  'methodLength', 'cyclomaticComplexity', 'cognitiveComplexity', 'parameterCount',
+  'classMethods', 'classFields', 'duplicateSimilarity'
+];
+
+// Threshold set from each metric, and the percentile used when config.yaml names none
+const CALIBRATED_THRESHOLDS = {
+  LongMethod: { metric: 'methodLength', percentile: 95 },
+  LongMethodCyclomatic: { metric: 'cyclomaticComplexity', percentile: 95 },
+  LongMethodCognitive: { metric: 'cognitiveComplexity', percentile: 95 },
+  LargeParameterList: { metric: 'parameterCount', percentile: 95 },
+  GodClassMethods: { metric: 'classMethods', percentile: 95 },
+  GodClassFields: { metric: 'classFields', percentile: 95 },
+  DuplicatedCodeSimilarity: { metric: 'duplicateSimilarity', percentile: 99 }
+};
+
+// Below this, "duplicates" are just code written in the same language
+const MIN_SIMILARITY_THRESHOLD = 0.5;
+// Files with hundreds of similar-length functions can still make the nearest-
+// neighbour search quadratic, so larger ones are not sampled for similarity
+const MAX_SIMILARITY_FUNCTIONS = 200;
+
+// Distributions of the measurements the size thresholds compare against, kept
+// as t-digests so a whole repository fits in a few kilobytes and sketches from
+// separate runs (e.g. one per module or CI shard) can be merged afterwards
+class Calibrator {
+  constructor(options = {}) {
+    this.compression = options.compression || 100;
+    this.sketches = {};
+    METRICS.forEach(metric => { this.sketches[metric] = new TDigest(this.compression); });
+    this.files = 0;
+    this.duplicates = new DuplicatedCodeAnalyzer({});
+  }
+
+  observe(parseResult) {
+    this.files++;
+
+    for (const func of parseResult.functions) {
+      // The line count LongMethod compares, and complexity from the same parse
+      this.sketches.methodLength.add(func.logicalLines !== undefined ? func.logicalLines : func.lineCount);
+      this.sketches.cyclomaticComplexity.add(func.cyclomaticComplexity);
+      this.sketches.cognitiveComplexity.add(func.cognitiveComplexity);
+      this.sketches.parameterCount.add(func.parameters.length);
+    }
+    for (const cls of parseResult.classes) {
+      this.sketches.classMethods.add(cls.methods.length);
+      this.sketches.classFields.add(cls.fields.length);
+    }
+    for (const similarity of this.nearestSimilarities(parseResult.functions)) {
+      this.sketches.duplicateSimilarity.add(similarity);
+    }
+  }
+
+  // Each function's similarity to its closest sibling, the score DuplicatedCode
+  // compares against its threshold. Siblings are visited in order of length
+  // difference, and the length-ratio bound stops the scan once it cannot beat
+  // the best score found, so most pairs never reach the Levenshtein pass.
+  nearestSimilarities(functions) {
+    const eligible = functions.filter(func => func.lineCount >= this.duplicates.minLineCount);
+    if (eligible.length < 2 || eligible.length > MAX_SIMILARITY_FUNCTIONS) return [];
+
+    const normalized = eligible.map(func => this.duplicates.normalizeContent(func.content));
+    const byLength = normalized.map((_, index) => index).sort((a, b) => normalized[a].length - normalized[b].length);
+    const best = new Float64Array(eligible.length);
+    const scored = new Set();
+
+    const score = (a, b) => {
+      const key = a < b ? a * eligible.length + b : b * eligible.length + a;
+      if (scored.has(key)) return;
+      scored.add(key);
+
+      const similarity = this.duplicates.calculateSimilarity(normalized[a], normalized[b]);
+      if (similarity > best[a]) best[a] = similarity;
+      if (similarity > best[b]) best[b] = similarity;
+    };
+
+    for (let position = 0; position < byLength.length; position++) {
+      const index = byLength[position];
+      let below = position - 1;
+      let above = position + 1;
+
+      while (below >= 0 || above < byLength.length) {
+        const boundBelow = below >= 0 ? this.duplicates.similarityUpperBound(normalized[index], normalized[byLength[below]]) : -1;
+        const boundAbove = above < byLength.length ? this.duplicates.similarityUpperBound(normalized[index], normalized[byLength[above]]) : -1;
+        if (Math.max(boundBelow, boundAbove) <= best[index]) break;
+
+        if (boundBelow >= boundAbove) {
+          score(index, byLength[below--]);
+        } else {
+          score(index, byLength[above++]);
+        }
+      }
+    }
+
+    return Array.from(best);
+  }
+
+  merge(other) {
+    METRICS.forEach(metric => this.sketches[metric].merge(other.sketches[metric]));
+    this.files += other.files;
+    return this;
+  }
+
+  // Thresholds at the configured percentiles; metrics with no samples are left out
+  thresholds(percentiles = {}) {
+    const thresholds = {};
+
+    for (const [name, { metric, percentile }] of Object.entries(CALIBRATED_THRESHOLDS)) {
+      const value = this.sketches[metric].quantile((percentiles[name] || percentile) / 100);
+      if (value === null) continue;
+
+      thresholds[name] = metric === 'duplicateSimilarity'
+        ? Math.min(1, Math.max(MIN_SIMILARITY_THRESHOLD, Math.round(value * 100) / 100))
+        // Analyzers flag values above the threshold, and treat 0 as unset
+        : Math.max(1, Math.ceil(value));
+    }
+
+    return thresholds;
+  }
+
+  summary() {
+    const summary = {};
+
+    for (const metric of METRICS) {
+      const sketch = this.sketches[metric];
+      const quantile = q => {
+        const value = sketch.quantile(q);
+        return value === null ? null : Math.round(value * 100) / 100;
+      };
+      summary[metric] = {
+        count: sketch.count,
+        min: quantile(0),
+        p50: quantile(0.5),
+        p90: quantile(0.9),
+        p95: quantile(0.95),
+        p99: quantile(0.99),
+        max: quantile(1)
+      };
+    }
+
+    return summary;
+  }
+
+  toJSON() {
+    const sketches = {};
+    METRICS.forEach(metric => { sketches[metric] = this.sketches[metric].toJSON(); });
+    return { version: SKETCH_VERSION, files: this.files, sketches };
+  }
+
+  static fromJSON(data) {
+    if (!data || data.version !== SKETCH_VERSION) {
+      throw new Error(`Unsupported calibration sketch version: ${data && data.version}`);
+    }
+
+    const calibrator = new Calibrator();
+    calibrator.files = data.files || 0;
+    // Sketches saved before a metric existed simply lack it
+    for (const metric of METRICS) {
+      if (data.sketches[metric]) calibrator.sketches[metric] = TDigest.fromJSON(data.sketches[metric]);
+    }
+    return calibrator;
+  }
+
+  save(filePath) {
+    fs.writeFileSync(filePath, JSON.stringify(this.toJSON()));
+  }
+
+  static load(filePath) {
+    return Calibrator.fromJSON(JSON.parse(fs.readFileSync(filePath, 'utf8')));
+  }
+}
+
+Calibrator.CALIBRATED_THRESHOLDS = CALIBRATED_THRESHOLDS;
+
+module.exports = Calibrator;
@@ -0,0 +1,146 @@
+// Class cohesion from a method x field usage matrix, one bitset row per method.
+// LCOM4 counts the connected components of the graph linking methods that use
+// a common field or call each other (1 means cohesive). TCC is the fraction of
+// method pairs that directly share at least one field.
+
+class UnionFind {
+  constructor(size) {
+    this.parent = new Int32Array(size);
+    this.rank = new Uint8Array(size);
+    for (let i = 0; i < size; i++) this.parent[i] = i;
+  }
+
+  find(x) {
+    while (this.parent[x] !== x) {
+      // Path halving keeps the trees flat without recursion
+      this.parent[x] = this.parent[this.parent[x]];
+      x = this.parent[x];
+    }
+    return x;
+  }
+
+  union(a, b) {
+    let rootA = this.find(a);
+    let rootB = this.find(b);
+    if (rootA === rootB) return;
+
+    if (this.rank[rootA] < this.rank[rootB]) [rootA, rootB] = [rootB, rootA];
+    this.parent[rootB] = rootA;
+    if (this.rank[rootA] === this.rank[rootB]) this.rank[rootA]++;
+  }
+}
+
+function createBitset(size) {
+  return new Uint32Array((size + 31) >>> 5);
+}
+
+function setBit(bits, index) {
+  bits[index >>> 5] |= 1 << (index & 31);
+}
+
+function intersects(a, b) {
+  for (let i = 0; i < a.length; i++) {
+    if ((a[i] & b[i]) !== 0) return true;
+  }
+  return false;
+}
+
+// Statement keywords that look like a type in "<type> <name>" patterns
+const JAVA_NON_TYPES = new Set(['return', 'new', 'throw', 'else', 'case', 'yield', 'assert', 'instanceof']);
+// "<type> <name>" ended the way a parameter or local declaration is ended
+const JAVA_DECLARATION = /\b([A-Za-z_$][\w$.]*)(?:<[\w$\s,.?<>[\]]*>)?(?:\[\])*\s+([A-Za-z_$][\w$]*)\s*(?=[=;:,)])/g;
+
+// Fields and sibling methods a method body refers to. Java members may be used
+// bare or through `this.`, but a bare name declared as a parameter or local
+// anywhere in the method is taken to be that variable. Python members are
+// always reached through `self.`.
+function memberReferences(body, language) {
+  const references = [];
+
+  if (language === 'python') {
+    const code = body.replace(/#.*$/gm, '');
+    for (const match of code.matchAll(/\bself\.(\w+)(\s*\()?/g)) {
+      references.push({ name: match[1], call: Boolean(match[2]) });
+    }
+  } else {
+    const code = body
+      .replace(/\/\*[\s\S]*?\*\//g, '')
+      .replace(/\/\/.*$/gm, '')
+      .replace(/"(?:\\.|[^"\\\n])*"/g, '""')
+      // `this.x` is the member even where a local or parameter shadows it
+      .replace(/\bthis\s*\.\s*([A-Za-z_$][\w$]*)(\s*\()?/g, (access, name, call) => {
+        references.push({ name, call: Boolean(call) });
+        return call ? '(' : '';
+      });
+
+    const locals = new Set();
+    for (const match of code.matchAll(JAVA_DECLARATION)) {
+      if (!JAVA_NON_TYPES.has(match[1])) locals.add(match[2]);
+    }
+
+    // Names after a dot belong to another object
+    for (const match of code.matchAll(/(\.\s*)?\b([A-Za-z_$][\w$]*)(\s*\()?/g)) {
+      const call = Boolean(match[3]);
+      if (!match[1] && (call || !locals.has(match[2]))) references.push({ name: match[2], call });
+    }
+  }
+
+  return references;
+}
+
+// methods: [{ name, body }] excluding constructors; fields: field names
+function measureCohesion(methods, fields, language) {
+  const methodCount = methods.length;
+  if (methodCount === 0) return null;
+
+  const fieldIndex = new Map(fields.map((field, index) => [field, index]));
+  const methodIndices = new Map();
+  methods.forEach((method, index) => {
+    if (!methodIndices.has(method.name)) methodIndices.set(method.name, []);
+    methodIndices.get(method.name).push(index);
+  });
+
+  const usage = methods.map(() => createBitset(fields.length));
+  const components = new UnionFind(methodCount);
+  // First method seen using each field; later users are joined to it
+  const firstUser = new Int32Array(fields.length).fill(-1);
+
+  methods.forEach((method, index) => {
+    for (const reference of memberReferences(method.body, language)) {
+      if (reference.call && methodIndices.has(reference.name)) {
+        for (const callee of methodIndices.get(reference.name)) components.union(index, callee);
+      } else if (fieldIndex.has(reference.name)) {
+        const field = fieldIndex.get(reference.name);
+        setBit(usage[index], field);
+        if (firstUser[field] === -1) {
+          firstUser[field] = index;
+        } else {
+          components.union(index, firstUser[field]);
+        }
+      }
+    }
+  });
+
+  const groups = new Map();
+  for (let i = 0; i < methodCount; i++) {
+    const root = components.find(i);
+    if (!groups.has(root)) groups.set(root, []);
+    groups.get(root).push(methods[i].name);
+  }
+
+  let connectedPairs = 0;
+  for (let i = 0; i < methodCount; i++) {
+    for (let j = i + 1; j < methodCount; j++) {
+      if (intersects(usage[i], usage[j])) connectedPairs++;
+    }
+  }
+  const pairCount = methodCount * (methodCount - 1) / 2;
+
+  return {
+    lcom4: groups.size,
+    tcc: pairCount > 0 ? connectedPairs / pairCount : null,
+    components: [...groups.values()]
+  };
+}
+
+module.exports = { measureCohesion, memberReferences, UnionFind };
@@ -0,0 +1,232 @@
+// Size and complexity counters for one function, fed line by line by
+// CodeSmellDetector.findFunctionEnd while it scans for the function's end, so
+// the body is walked once for both.
+//   logicalLines: lineCount without blank and/or comment lines, following
+//     analysis.ignoreEmptyLines and analysis.ignoreComments
+//   cyclomaticComplexity: 1 + branches, loops, cases, catches, ternaries and &&/||
+//   cognitiveComplexity: each control structure costs 1 plus its nesting level,
+//     else/elif cost 1, and so does every switch between && and || in a condition
+//   maxNesting: deepest nesting of control structures
+
+// Comments, strings and the opening of multi-line comments/strings
+const TOKENS = {
+  java: /\/\/|\/\*|"(?:\\.|[^"\\])*"|'(?:\\.|[^'\\])*'/,
+  python: /#|"""|'''|"(?:\\.|[^"\\])*"|'(?:\\.|[^'\\])*'/
+};
+const QUOTES_OR_COMMENTS = { java: /["'/]/, python: /["'#]/ };
+const LINE_COMMENTS = new Set(['//', '#']);
+const BLOCK_ENDS = { '/*': '*/', '"""': '"""', "'''": "'''" };
+
+// `?` of a ternary, not of a wildcard generic such as List<?> or <? extends T>
+const JAVA_KEYWORDS = /\b(if|else|for|while|do|switch|case|catch)\b|&&|\|\||(?<!<\s*)\?(?!\s*(?:[>,]|extends\b|super\b))/g;
+const PYTHON_KEYWORDS = /\b(if|elif|else|for|while|except|def|and|or)\b/g;
+// Python statements whose body is one nesting level deeper
+const PYTHON_NESTING = /^(if|elif|else|for|while|except|def)\b/;
+
+const BLANK = 0;
+const COMMENT = 1;
+const CODE = 2;
+
+// The code of a line with comments removed and string literals emptied, and
+// the delimiter of a block comment or multi-line string still open after it
+function stripLine(line, language, openBlock) {
+  // Most lines hold no comment or string at all
+  if (!openBlock && !QUOTES_OR_COMMENTS[language].test(line)) {
+    return { code: line.trim(), openBlock: null };
+  }
+
+  let code = '';
+  let rest = line;
+
+  while (rest.length > 0) {
+    if (openBlock) {
+      const end = rest.indexOf(openBlock);
+      if (end === -1) break;
+      rest = rest.slice(end + openBlock.length);
+      if (language === 'python') code += '""';
+      openBlock = null;
+      continue;
+    }
+
+    const match = rest.match(TOKENS[language]);
+    if (!match) {
+      code += rest;
+      break;
+    }
+
+    code += rest.slice(0, match.index);
+    rest = rest.slice(match.index + match[0].length);
+    if (LINE_COMMENTS.has(match[0])) break;
+
+    if (BLOCK_ENDS[match[0]]) {
+      openBlock = BLOCK_ENDS[match[0]];
+    } else {
+      code += '""';
+    }
+  }
+
+  return { code: code.trim(), openBlock };
+}
+
+// Everything about a line that does not depend on the enclosing function
+function scanLine(line, language, openBefore) {
+  if (line.trim() === '') {
+    return { openBefore, openAfter: openBefore, kind: BLANK };
+  }
+
+  const { code, openBlock } = stripLine(line, language, openBefore);
+  const scan = { openBefore, openAfter: openBlock, kind: CODE };
+
+  // A bare string statement in Python is a docstring
+  if (code === '' || (language === 'python' && code === '""')) {
+    scan.kind = COMMENT;
+  } else if (language === 'python') {
+    scan.indent = line.length - line.trimStart().length;
+    scan.tokens = [...code.matchAll(PYTHON_KEYWORDS)].map(match => ({ token: match[0], leading: match.index === 0 }));
+    scan.nests = code.endsWith(':') && PYTHON_NESTING.test(code);
+  } else {
+    // "} else if (...) {" sits at the level of the block it closes
+    scan.closing = code[0] === '}' ? code.match(/^[}\s]*/)[0].replace(/\s/g, '').length : 0;
+    scan.tokens = code.match(JAVA_KEYWORDS) || [];
+  }
+
+  return scan;
+}
+
+class FunctionMetrics {
+  // lineScans: optional Map shared by every function of one file, so lines in
+  // nested or overlapping functions are only tokenized once
+  constructor(language, analysis = {}, lineScans = null) {
+    this.language = language;
+    this.ignoreComments = Boolean(analysis.ignoreComments);
+    this.ignoreEmptyLines = Boolean(analysis.ignoreEmptyLines);
+    this.lineScans = lineScans;
+    this.lines = 0;
+    this.blankLines = 0;
+    this.commentLines = 0;
+    this.cyclomatic = 1;
+    this.cognitive = 0;
+    this.maxNesting = 0;
+    this.openBlock = null;
+    // Python: indentation of the def line, then of each enclosing nesting structure
+    this.baseIndent = null;
+    this.blocks = [];
+  }
+
+  // depth: Java brace depth before the line, the method body being depth 1;
+  // index: the line's position in the file, the key into lineScans
+  addLine(line, depth = 0, index = -1) {
+    let scan = this.lineScans && index >= 0 ? this.lineScans.get(index) : undefined;
+    if (!scan || scan.openBefore !== this.openBlock) {
+      scan = scanLine(line, this.language, this.openBlock);
+      if (this.lineScans && index >= 0) this.lineScans.set(index, scan);
+    }
+
+    this.openBlock = scan.openAfter;
+    this.lines++;
+    if (scan.kind === BLANK) {
+      this.blankLines++;
+    } else if (scan.kind === COMMENT) {
+      this.commentLines++;
+    } else if (this.language === 'python') {
+      this.measurePython(scan);
+    } else {
+      this.measureJava(scan, depth);
+    }
+  }
+
+  measureJava(scan, depth) {
+    const nesting = Math.max(0, depth - scan.closing - 1);
+    const tokens = scan.tokens;
+    let operator = null;
+
+    for (let i = 0; i < tokens.length; i++) {
+      const token = tokens[i];
+      if (token === '&&' || token === '||') {
+        this.cyclomatic++;
+        if (token !== operator) this.cognitive++;
+        operator = token;
+        continue;
+      }
+
+      operator = null;
+      if (token === 'else') {
+        this.cognitive++;
+        if (tokens[i + 1] === 'if') {
+          this.cyclomatic++;
+          i++;
+        }
+      } else if (token === 'case') {
+        this.cyclomatic++;
+      } else if (token === 'while' && scan.closing > 0 && i === 0) {
+        // The "} while (...);" of a do-while, already counted at "do"
+        this.cyclomatic++;
+      } else {
+        if (token !== 'switch' && token !== 'do') this.cyclomatic++;
+        this.addStructure(nesting);
+      }
+    }
+  }
+
+  measurePython(scan) {
+    if (this.baseIndent === null) {
+      this.baseIndent = scan.indent;
+      return;
+    }
+
+    while (this.blocks.length > 0 && this.blocks[this.blocks.length - 1] >= scan.indent) {
+      this.blocks.pop();
+    }
+    const nesting = this.blocks.length;
+    let operator = null;
+
+    for (const { token, leading } of scan.tokens) {
+      if (token === 'and' || token === 'or') {
+        this.cyclomatic++;
+        if (token !== operator) this.cognitive++;
+        operator = token;
+        continue;
+      }
+
+      operator = null;
+      if (!leading) {
+        // Conditional expressions and comprehension clauses
+        if (token === 'if') {
+          this.cyclomatic++;
+          this.addStructure(nesting);
+        } else if (token === 'for') {
+          this.cyclomatic++;
+        }
+      } else if (token === 'elif' || token === 'else') {
+        if (token === 'elif') this.cyclomatic++;
+        this.cognitive++;
+      } else if (token !== 'def') {
+        this.cyclomatic++;
+        this.addStructure(nesting);
+      }
+    }
+
+    // Nested functions deepen nesting without adding to the score
+    if (scan.nests) this.blocks.push(scan.indent);
+  }
+
+  addStructure(nesting) {
+    this.cognitive += 1 + nesting;
+    this.maxNesting = Math.max(this.maxNesting, nesting + 1);
+  }
+
+  result() {
+    let logicalLines = this.lines;
+    if (this.ignoreEmptyLines) logicalLines -= this.blankLines;
+    if (this.ignoreComments) logicalLines -= this.commentLines;
+
+    return {
+      logicalLines,
+      cyclomaticComplexity: this.cyclomatic,
+      cognitiveComplexity: this.cognitive,
+      maxNesting: this.maxNesting
+    };
+  }
+}
+
+module.exports = FunctionMetrics;
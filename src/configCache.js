@@ -0,0 +1,52 @@
+const fs = require('fs');
+const path = require('path');
+const crypto = require('crypto');
+const { privateTempDir, ensurePrivateDir, isPrivateDir, writeFileAtomic } = require('./privateDir');
+
+const CACHE_VERSION = 1;
+
+// null when the per-user cache directory is unusable; the config is then parsed every run
+function cacheFileFor(configPath) {
+  const cacheDir = privateTempDir();
+  if (!cacheDir) return null;
+
+  const key = crypto.createHash('sha1').update(path.resolve(configPath)).digest('hex');
+  return path.join(cacheDir, `config-${key}.json`);
+}
+
+// Parsed configs are kept as JSON keyed by the config file's size and mtime, so
+// repeated CLI runs skip loading and running the YAML parser entirely.
+// parse(content) is only called on a cache miss. Entries are only read from and
+// written to a directory private to the current user (see privateDir.js).
+function loadCachedConfig(configPath, parse, cacheFile = cacheFileFor(configPath)) {
+  const stat = fs.statSync(configPath);
+  if (!cacheFile) return parse(fs.readFileSync(configPath, 'utf8'));
+
+  try {
+    if (!isPrivateDir(path.dirname(cacheFile))) throw new Error('Cache directory is not private');
+    const cached = JSON.parse(fs.readFileSync(cacheFile, 'utf8'));
+    if (cached.version === CACHE_VERSION && cached.size === stat.size && cached.mtimeMs === stat.mtimeMs) {
+      return cached.config;
+    }
+  } catch (error) {
+    // Missing, unreadable or untrusted cache: fall through and parse
+  }
+
+  const config = parse(fs.readFileSync(configPath, 'utf8'));
+
+  try {
+    if (!ensurePrivateDir(path.dirname(cacheFile))) return config;
+    writeFileAtomic(cacheFile, JSON.stringify({
+      version: CACHE_VERSION,
+      size: stat.size,
+      mtimeMs: stat.mtimeMs,
+      config
+    }));
+  } catch (error) {
+    // A read-only temp dir only costs the next run a re-parse
+  }
+
+  return config;
+}
+
+module.exports = { loadCachedConfig, cacheFileFor };
@@ -0,0 +1,255 @@
+const net = require('net');
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const CodeSmellDetector = require('./detector');
+const { privateTempDir } = require('./privateDir');
+
+// Bumped whenever the request or response shape changes; a CLI talking to an
+// older daemon then falls back to analyzing in-process instead of misreading it
+const PROTOCOL_VERSION = 1;
+const CONNECT_TIMEOUT_MS = 200;
+const MAX_DETECTORS = 16;
+
+function defaultSocketPath() {
+  if (process.env.CODE_SMELL_DAEMON_SOCKET) {
+    return process.env.CODE_SMELL_DAEMON_SOCKET;
+  }
+
+  if (process.platform === 'win32') {
+    return `\\\\.\\pipe\\code-smell-detector-${os.userInfo().username}`;
+  }
+
+  // Inside this user's 0700 directory nobody else can reach or replace the
+  // socket; null when that directory is unusable
+  const dir = privateTempDir();
+  return dir ? path.join(dir, 'daemon.sock') : null;
+}
+
+// Send one request and wait for its reply. Resolves null when no daemon is
+// listening (or it goes away mid-request) so callers can fall back in-process.
+function sendRequest(socketPath, request) {
+  if (!socketPath) return Promise.resolve(null);
+
+  return new Promise(resolve => {
+    const socket = net.createConnection(socketPath);
+    let buffer = '';
+    let settled = false;
+
+    const finish = response => {
+      if (settled) return;
+      settled = true;
+      clearTimeout(connectTimer);
+      socket.destroy();
+      resolve(response);
+    };
+
+    const connectTimer = setTimeout(() => finish(null), CONNECT_TIMEOUT_MS);
+
+    socket.setEncoding('utf8');
+    socket.on('connect', () => {
+      clearTimeout(connectTimer);
+      socket.write(`${JSON.stringify({ version: PROTOCOL_VERSION, ...request })}\n`);
+    });
+    socket.on('data', chunk => {
+      buffer += chunk;
+      const newline = buffer.indexOf('\n');
+      if (newline === -1) return;
+
+      try {
+        finish(JSON.parse(buffer.slice(0, newline)));
+      } catch (error) {
+        finish(null);
+      }
+    });
+    socket.on('error', () => finish(null));
+    socket.on('close', () => finish(null));
+  });
+}
+
+// Analyze one file through a running daemon; null means "do it yourself"
+async function analyzeViaDaemon(filePath, configPath, overrides, socketPath = defaultSocketPath(), jobs = 1) {
+  const response = await sendRequest(socketPath, {
+    type: 'analyze',
+    filePath: path.resolve(filePath),
+    configPath: path.resolve(configPath),
+    overrides,
+    jobs
+  });
+
+  if (!response || !response.ok) return null;
+
+  // The daemon sees absolute paths; report the path the way the user gave it
+  return { ...response.result, filePath };
+}
+
+// Long-lived process that keeps configs, detectors and their JIT-warmed
+// analyzers resident and serves newline-delimited JSON requests over a Unix
+// domain socket (a named pipe on Windows).
+class AnalysisDaemon {
+  // options.loadConfig(configPath) and options.applyOverrides(config, overrides)
+  // are the CLI's own config functions, so both paths resolve config identically
+  constructor(options = {}) {
+    this.socketPath = options.socketPath || defaultSocketPath();
+    this.loadConfig = options.loadConfig;
+    this.applyOverrides = options.applyOverrides || (config => config);
+    this.idleTimeout = options.idleTimeout || 0; // ms, 0 keeps running forever
+    this.configs = new Map();
+    this.detectors = new Map();
+    this.server = null;
+    this.idleTimer = null;
+    this.stats = { startedAt: null, requests: 0 };
+  }
+
+  async start() {
+    if (!this.socketPath) {
+      throw new Error('No private temp directory for the daemon socket; pass --socket');
+    }
+
+    if (await sendRequest(this.socketPath, { type: 'ping' })) {
+      throw new Error(`A daemon is already listening on ${this.socketPath}`);
+    }
+
+    // A socket file left behind by a crashed daemon would make listen() fail
+    if (process.platform !== 'win32' && fs.existsSync(this.socketPath)) {
+      fs.unlinkSync(this.socketPath);
+    }
+
+    // The socket file takes its mode from the umask when listen() binds it, so
+    // it is created 0600 rather than tightened afterwards; this also covers a
+    // --socket path outside the private directory
+    this.server = net.createServer(socket => this.handleConnection(socket));
+    const previousUmask = process.platform !== 'win32' ? process.umask(0o177) : null;
+    try {
+      await new Promise((resolve, reject) => {
+        this.server.once('error', reject);
+        this.server.listen(this.socketPath, resolve);
+      });
+    } finally {
+      if (previousUmask !== null) process.umask(previousUmask);
+    }
+
+    this.stats.startedAt = Date.now();
+    this.resetIdleTimer();
+  }
+
+  async stop() {
+    clearTimeout(this.idleTimer);
+    if (!this.server) return;
+
+    const server = this.server;
+    this.server = null;
+    await new Promise(resolve => server.close(resolve));
+  }
+
+  resetIdleTimer() {
+    clearTimeout(this.idleTimer);
+    if (this.idleTimeout > 0) {
+      this.idleTimer = setTimeout(() => this.stop(), this.idleTimeout);
+      this.idleTimer.unref();
+    }
+  }
+
+  handleConnection(socket) {
+    let buffer = '';
+    let queue = Promise.resolve();
+
+    socket.setEncoding('utf8');
+    socket.on('data', chunk => {
+      buffer += chunk;
+      let newline;
+      while ((newline = buffer.indexOf('\n')) !== -1) {
+        const line = buffer.slice(0, newline);
+        buffer = buffer.slice(newline + 1);
+        if (!line.trim()) continue;
+
+        // Requests on one connection are answered in order
+        queue = queue.then(async () => {
+          const response = await this.handleLine(line);
+          if (!socket.destroyed) socket.write(`${JSON.stringify(response)}\n`);
+          if (response.shutdown) this.stop();
+        });
+      }
+    });
+    socket.on('error', () => socket.destroy());
+  }
+
+  async handleLine(line) {
+    this.stats.requests++;
+    this.resetIdleTimer();
+
+    let request;
+    try {
+      request = JSON.parse(line);
+    } catch (error) {
+      return { ok: false, error: 'Malformed request' };
+    }
+
+    const id = request.id;
+    if (request.version !== PROTOCOL_VERSION) {
+      return { id, ok: false, error: `Unsupported protocol version ${request.version}` };
+    }
+
+    try {
+      switch (request.type) {
+        case 'ping':
+          return {
+            id,
+            ok: true,
+            pid: process.pid,
+            uptimeMs: Date.now() - this.stats.startedAt,
+            requests: this.stats.requests,
+            detectors: this.detectors.size
+          };
+        case 'analyze': {
+          const detector = this.detectorFor(this.resolveConfig(request.configPath, request.overrides), request.jobs);
+          return { id, ok: true, result: await detector.analyze(request.filePath) };
+        }
+        case 'shutdown':
+          return { id, ok: true, shutdown: true };
+        default:
+          return { id, ok: false, error: `Unknown request type ${request.type}` };
+      }
+    } catch (error) {
+      return { id, ok: false, error: error.message };
+    }
+  }
+
+  // Configs stay parsed in memory until the file on disk changes. A missing
+  // config is an error here so the CLI falls back and prints its usual warning.
+  resolveConfig(configPath, overrides = {}) {
+    const stat = fs.statSync(configPath);
+    let entry = this.configs.get(configPath);
+
+    if (!entry || entry.size !== stat.size || entry.mtimeMs !== stat.mtimeMs) {
+      entry = { size: stat.size, mtimeMs: stat.mtimeMs, config: this.loadConfig(configPath) };
+      this.configs.set(configPath, entry);
+    }
+
+    // CLI overrides mutate the config they are given
+    return this.applyOverrides(JSON.parse(JSON.stringify(entry.config)), overrides);
+  }
+
+  // Detectors hold no per-file state, so one per distinct effective config is reused
+  detectorFor(config, jobs = 1) {
+    const key = `${jobs}:${JSON.stringify(config)}`;
+    let detector = this.detectors.get(key);
+
+    if (detector) {
+      // Refresh recency for the eviction below
+      this.detectors.delete(key);
+    } else {
+      detector = new CodeSmellDetector(config, { jobs });
+    }
+
+    this.detectors.set(key, detector);
+    if (this.detectors.size > MAX_DETECTORS) {
+      this.detectors.delete(this.detectors.keys().next().value);
+    }
+    return detector;
+  }
+}
+
+AnalysisDaemon.PROTOCOL_VERSION = PROTOCOL_VERSION;
+
+module.exports = { AnalysisDaemon, analyzeViaDaemon, sendRequest, defaultSocketPath };
@@ -1,45 +1,56 @@
 const fs = require('fs');
 const path = require('path');
+const FunctionMetrics = require('./complexity');
+const SmellRules = require('./smellRules');
 
-// Import analyzers
-const LongMethodAnalyzer = require('./analyzers/longMethod');
-const GodClassAnalyzer = require('./analyzers/godClass');
-const DuplicatedCodeAnalyzer = require('./analyzers/duplicatedCode');
-const LargeParameterListAnalyzer = require('./analyzers/largeParameterList');
-const MagicNumbersAnalyzer = require('./analyzers/magicNumbers');
-const FeatureEnvyAnalyzer = require('./analyzers/featureEnvy');
+// Analyzer modules are required only when their smell is enabled, which keeps
+// short CLI runs (e.g. pre-commit hooks on a few files) from loading all six
+const ANALYZER_MODULES = {
+  LongMethod: './analyzers/longMethod',
+  GodClass: './analyzers/godClass',
+  DuplicatedCode: './analyzers/duplicatedCode',
+  LargeParameterList: './analyzers/largeParameterList',
+  MagicNumbers: './analyzers/magicNumbers',
+  FeatureEnvy: './analyzers/featureEnvy'
+};
+
+// Order in which analyzeStream runs analyzers: line scans and per-function
+// checks first, then per-class ones, and pairwise duplication last
+const STREAM_ORDER = ['MagicNumbers', 'LargeParameterList', 'LongMethod', 'GodClass', 'FeatureEnvy', 'DuplicatedCode'];
+
+// Statement keywords that look like a type in "<type> <name> =" patterns
+const JAVA_NON_TYPES = new Set(['return', 'new', 'throw', 'else', 'case', 'package', 'import', 'assert']);
 
 class CodeSmellDetector {
-  constructor(config) {
+  // options.symbolIndex: project-wide SymbolIndex shared across files in directory mode
+  // options.topK: TopKCollector whose admission check lets analyzers drop hopeless candidates
+  // options.jobs: worker threads a single large file may be split across
+  constructor(config, options = {}) {
     this.config = config;
+    this.symbolIndex = options.symbolIndex || null;
+    this.jobs = options.jobs || 1;
     this.analyzers = this.initializeAnalyzers();
+
+    // Every analyzer has an admit slot, null by default. In top-K mode it becomes
+    // a (severity, magnitude) => boolean check that lets the analyzer skip
+    // candidates the heap would reject, before building their details
+    if (options.topK) {
+      for (const [smellType, analyzer] of Object.entries(this.analyzers)) {
+        analyzer.admit = (severity, magnitude) => options.topK.admits(smellType, severity, magnitude);
+      }
+    }
   }
 
   initializeAnalyzers() {
     const analyzers = {};
     
-    if (this.config.smells.LongMethod) {
-      analyzers.LongMethod = new LongMethodAnalyzer(this.config.thresholds);
-    }
-    
-    if (this.config.smells.GodClass) {
-      analyzers.GodClass = new GodClassAnalyzer(this.config.thresholds);
-    }
-    
-    if (this.config.smells.DuplicatedCode) {
-      analyzers.DuplicatedCode = new DuplicatedCodeAnalyzer(this.config.thresholds);
-    }
-    
-    if (this.config.smells.LargeParameterList) {
-      analyzers.LargeParameterList = new LargeParameterListAnalyzer(this.config.thresholds);
-    }
-    
-    if (this.config.smells.MagicNumbers) {
-      analyzers.MagicNumbers = new MagicNumbersAnalyzer(this.config.thresholds);
-    }
-    
-    if (this.config.smells.FeatureEnvy) {
-      analyzers.FeatureEnvy = new FeatureEnvyAnalyzer(this.config.thresholds);
+    for (const [smellType, modulePath] of Object.entries(ANALYZER_MODULES)) {
+      if (!this.config.smells[smellType]) continue;
+      
+      const Analyzer = require(modulePath);
+      analyzers[smellType] = smellType === 'FeatureEnvy'
+        ? new Analyzer(this.config.thresholds, this.symbolIndex)
+        : new Analyzer(this.config.thresholds);
     }
 
     return analyzers;
@@ -49,47 +60,117 @@ class CodeSmellDetector {
     try {
       // Read file content
       const content = fs.readFileSync(filePath, 'utf8');
-      const fileExtension = path.extname(filePath);
-      
-      // Validate file type
-      if (!['.py', '.java'].includes(fileExtension)) {
-        throw new Error(`Unsupported file type: ${fileExtension}. Only .py and .java files are supported.`);
+      return await this.analyzeContent(content, filePath);
+    } catch (error) {
+      throw new Error(`Failed to analyze ${filePath}: ${error.message}`);
+    }
+  }
+
+  async analyzeContent(content, filePath) {
+    // Parse file into AST-like structure
+    const parseResult = this.parseFile(content, this.checkFileType(filePath));
+
+    // Run all active analyzers; very large files are split across worker threads
+    const perAnalyzer = this.jobs > 1 && parseResult.lines.length >= CodeSmellDetector.PARALLEL_MIN_LINES
+      ? await require('./parallelAnalysis').runAnalyzersInWorkers(this, parseResult, content, filePath)
+      : await this.runAnalyzers(parseResult, content, filePath);
+
+    return this.buildResult(perAnalyzer, content, filePath);
+  }
+
+  // Yields { smellType, smells } as each analyzer finishes, cheapest first, so
+  // callers can show partial results before the slow pairwise analyzers are
+  // done; buildResult turns the collected pairs into the usual report.
+  // options.metrics: also yield each analyzer's raw metrics, with the smells
+  // derived from them by SmellRules, so the caller can re-apply other
+  // thresholds later without analyzing again
+  async *analyzeStream(content, filePath, options = {}) {
+    const parseResult = this.parseFile(content, this.checkFileType(filePath));
+    const smellTypes = Object.keys(this.analyzers)
+      .sort((a, b) => STREAM_ORDER.indexOf(a) - STREAM_ORDER.indexOf(b));
+
+    for (const smellType of smellTypes) {
+      // Analyzers are CPU-bound; give the consumer's pending writes a chance to flush
+      await new Promise(resolve => setImmediate(resolve));
+
+      if (options.metrics) {
+        const metrics = await this.measureAnalyzer(smellType, parseResult, content, filePath);
+        if (metrics) yield { smellType, smells: SmellRules.evaluate(smellType, metrics, this.config.thresholds), metrics };
+        continue;
       }
 
-      // Parse file into AST-like structure
-      const parseResult = this.parseFile(content, fileExtension);
-      
-      // Run all active analyzers
-      const detectedSmells = [];
-      const activeSmells = [];
+      const smells = await this.runAnalyzer(smellType, parseResult, content, filePath);
+      if (smells) yield { smellType, smells };
+    }
+  }
 
-      for (const [smellType, analyzer] of Object.entries(this.analyzers)) {
-        try {
-          const smells = await analyzer.analyze(parseResult, content, filePath);
-          if (smells.length > 0) {
-            activeSmells.push(smellType);
-            detectedSmells.push(...smells);
-          }
-        } catch (error) {
-          console.warn(`Warning: ${smellType} analyzer failed:`, error.message);
-        }
+  checkFileType(filePath) {
+    const fileExtension = path.extname(filePath);
+
+    // Validate file type
+    if (!['.py', '.java'].includes(fileExtension)) {
+      throw new Error(`Unsupported file type: ${fileExtension}. Only .py and .java files are supported.`);
+    }
+
+    return fileExtension;
+  }
+
+  // The report for [smellType, smells] pairs, in the order given
+  buildResult(perAnalyzer, content, filePath) {
+    const fileExtension = path.extname(filePath);
+    const detectedSmells = [];
+    const activeSmells = [];
+
+    for (const [smellType, smells] of perAnalyzer) {
+      if (smells.length > 0) {
+        activeSmells.push(smellType);
+        detectedSmells.push(...smells);
+      }
+    }
+
+    return {
+      file: path.basename(filePath),
+      filePath: filePath,
+      language: fileExtension === '.py' ? 'Python' : 'Java',
+      activeSmells: activeSmells,
+      detected: detectedSmells,
+      summary: {
+        totalSmells: detectedSmells.length,
+        uniqueSmellTypes: activeSmells.length,
+        linesAnalyzed: content.split('\n').length
       }
+    };
+  }
 
-      return {
-        file: path.basename(filePath),
-        filePath: filePath,
-        language: fileExtension === '.py' ? 'Python' : 'Java',
-        activeSmells: activeSmells,
-        detected: detectedSmells,
-        summary: {
-          totalSmells: detectedSmells.length,
-          uniqueSmellTypes: activeSmells.length,
-          linesAnalyzed: content.split('\n').length
-        }
-      };
+  // [smellType, smells] pairs in analyzer order; a failing analyzer reports nothing
+  async runAnalyzers(parseResult, content, filePath) {
+    const perAnalyzer = [];
 
+    for (const smellType of Object.keys(this.analyzers)) {
+      const smells = await this.runAnalyzer(smellType, parseResult, content, filePath);
+      if (smells) perAnalyzer.push([smellType, smells]);
+    }
+
+    return perAnalyzer;
+  }
+
+  // The analyzer's smells, or null when it fails
+  async runAnalyzer(smellType, parseResult, content, filePath) {
+    try {
+      return await this.analyzers[smellType].analyze(parseResult, content, filePath);
     } catch (error) {
-      throw new Error(`Failed to analyze ${filePath}: ${error.message}`);
+      console.warn(`Warning: ${smellType} analyzer failed:`, error.message);
+      return null;
+    }
+  }
+
+  // The analyzer's threshold-independent metrics, or null when it fails
+  async measureAnalyzer(smellType, parseResult, content, filePath) {
+    try {
+      return await this.analyzers[smellType].measure(parseResult, content, filePath);
+    } catch (error) {
+      console.warn(`Warning: ${smellType} analyzer failed:`, error.message);
+      return null;
     }
   }
 
@@ -110,13 +191,17 @@ class CodeSmellDetector {
     return parsed;
   }
 
-  extractFunctions(content, fileExtension) {
+  // startIndices optionally restricts which lines are considered as definition starts
+  extractFunctions(content, fileExtension, startIndices = null) {
     const functions = [];
     const lines = content.split('\n');
+    const candidates = startIndices || lines.keys();
+    // Lines scanned for complexity metrics, reused by nested and overlapping functions
+    const lineScans = new Map();
     
     if (fileExtension === '.py') {
       // Python function extraction - handle multi-line signatures
-      for (let i = 0; i < lines.length; i++) {
+      for (const i of candidates) {
         const line = lines[i].trim();
         
         // Check for function definition start
@@ -152,7 +237,8 @@ class CodeSmellDetector {
             const parameters = paramMatch ? this.parseParameters(paramMatch[1], 'python') : [];
             
             const startLine = i + 1;
-            const endLine = this.findFunctionEnd(lines, i, 'python');
+            const metrics = new FunctionMetrics('python', this.config.analysis, lineScans);
+            const endLine = this.findFunctionEnd(lines, i, 'python', metrics);
             
             functions.push({
               name: functionName,
@@ -160,14 +246,15 @@ class CodeSmellDetector {
               startLine: startLine,
               endLine: endLine,
               lineCount: endLine - startLine + 1,
-              content: lines.slice(i, endLine).join('\n')
+              content: lines.slice(i, endLine).join('\n'),
+              ...metrics.result()
             });
           }
         }
       }
     } else if (fileExtension === '.java') {
       // Java method extraction
-      for (let i = 0; i < lines.length; i++) {
+      for (const i of candidates) {
         const line = lines[i].trim();
         const methodMatch = line.match(/(public|private|protected)?\s*(static)?\s*\w+\s+(\w+)\s*\((.*?)\)\s*\{?/);
         
@@ -175,7 +262,8 @@ class CodeSmellDetector {
           const methodName = methodMatch[3];
           const parameters = this.parseParameters(methodMatch[4], 'java');
           const startLine = i + 1;
-          const endLine = this.findFunctionEnd(lines, i, 'java');
+          const metrics = new FunctionMetrics('java', this.config.analysis, lineScans);
+          const endLine = this.findFunctionEnd(lines, i, 'java', metrics);
           
           functions.push({
             name: methodName,
@@ -183,7 +271,8 @@ class CodeSmellDetector {
             startLine: startLine,
             endLine: endLine,
             lineCount: endLine - startLine + 1,
-            content: lines.slice(i, endLine).join('\n')
+            content: lines.slice(i, endLine).join('\n'),
+            ...metrics.result()
           });
         }
       }
@@ -192,13 +281,14 @@ class CodeSmellDetector {
     return functions;
   }
 
-  extractClasses(content, fileExtension) {
+  extractClasses(content, fileExtension, startIndices = null) {
     const classes = [];
     const lines = content.split('\n');
+    const candidates = startIndices || lines.keys();
     
     if (fileExtension === '.py') {
       // Python class extraction
-      for (let i = 0; i < lines.length; i++) {
+      for (const i of candidates) {
         const line = lines[i].trim();
         const classMatch = line.match(/^class\s+(\w+)(?:\(.*?\))?:/);
         
@@ -215,13 +305,14 @@ class CodeSmellDetector {
             lineCount: endLine - startLine + 1,
             content: classContent,
             methods: this.extractMethodsFromClass(classContent, 'python'),
-            fields: this.extractFieldsFromClass(classContent, 'python')
+            fields: this.extractFieldsFromClass(classContent, 'python'),
+            fieldTypes: this.extractFieldTypes(classContent, 'python')
           });
         }
       }
     } else if (fileExtension === '.java') {
       // Java class extraction
-      for (let i = 0; i < lines.length; i++) {
+      for (const i of candidates) {
         const line = lines[i].trim();
         const classMatch = line.match(/(public|private|protected)?\s*class\s+(\w+)/);
         
@@ -238,7 +329,8 @@ class CodeSmellDetector {
             lineCount: endLine - startLine + 1,
             content: classContent,
             methods: this.extractMethodsFromClass(classContent, 'java'),
-            fields: this.extractFieldsFromClass(classContent, 'java')
+            fields: this.extractFieldsFromClass(classContent, 'java'),
+            fieldTypes: this.extractFieldTypes(classContent, 'java')
           });
         }
       }
@@ -308,17 +400,23 @@ class CodeSmellDetector {
     return paramString.split(',').map(param => param.trim()).filter(p => p.length > 0);
   }
 
-  findFunctionEnd(lines, startIndex, language) {
+  // metrics: optional FunctionMetrics fed every line of the function on the way
+  findFunctionEnd(lines, startIndex, language, metrics = null) {
     if (language === 'python') {
       const baseIndent = this.getIndentation(lines[startIndex]);
+      if (metrics) metrics.addLine(lines[startIndex], 0, startIndex);
       for (let i = startIndex + 1; i < lines.length; i++) {
         const line = lines[i];
-        if (line.trim() === '') continue;
+        if (line.trim() === '') {
+          if (metrics) metrics.addLine(line, 0, i);
+          continue;
+        }
         
         const currentIndent = this.getIndentation(line);
         if (currentIndent <= baseIndent && line.trim() !== '') {
           return i;
         }
+        if (metrics) metrics.addLine(line, 0, i);
       }
       return lines.length;
     } else if (language === 'java') {
@@ -327,6 +425,7 @@ class CodeSmellDetector {
       
       for (let i = startIndex; i < lines.length; i++) {
         const line = lines[i];
+        if (metrics) metrics.addLine(line, braceCount, i);
         for (const char of line) {
           if (char === '{') {
             braceCount++;
@@ -399,10 +498,55 @@ class CodeSmellDetector {
     return [...new Set(fields)]; // Remove duplicates
   }
 
+  // Declared field types, keyed by field name. Only Java members directly in the
+  // class body are considered, so locals inside methods are not mistaken for fields.
+  extractFieldTypes(classContent, language) {
+    const fieldTypes = {};
+    const lines = classContent.split('\n');
+    
+    if (language === 'python') {
+      for (const line of lines) {
+        const annotated = line.match(/self\.(\w+)\s*:\s*([\w.]+)/);
+        const constructed = line.match(/self\.(\w+)\s*=\s*([A-Z]\w*)\s*\(/);
+        const match = annotated || constructed;
+        if (match && !fieldTypes[match[1]]) {
+          fieldTypes[match[1]] = this.baseTypeName(match[2]);
+        }
+      }
+    } else if (language === 'java') {
+      let depth = 0;
+      for (const line of lines) {
+        if (depth === 1) {
+          // "private String first, last;" declares several fields of one type
+          const fieldMatch = line.trim().match(/^(?:(?:private|public|protected|static|final|transient|volatile)\s+)*([\w.]+(?:<.*>)?(?:\[\])*)\s+(\w+(?:\s*,\s*\w+)*)\s*(?:=|;)/);
+          if (fieldMatch && !JAVA_NON_TYPES.has(fieldMatch[1])) {
+            for (const name of fieldMatch[2].split(',')) {
+              fieldTypes[name.trim()] = this.baseTypeName(fieldMatch[1]);
+            }
+          }
+        }
+        for (const char of line) {
+          if (char === '{') depth++;
+          else if (char === '}') depth--;
+        }
+      }
+    }
+    
+    return fieldTypes;
+  }
+
+  // Strip generics, arrays and package qualifiers: java.util.List<Order>[] -> List
+  baseTypeName(typeName) {
+    return typeName.replace(/<.*$/, '').replace(/\[\]/g, '').split('.').pop();
+  }
+
   getIndentation(line) {
     const match = line.match(/^(\s*)/);
     return match ? match[1].length : 0;
   }
 }
 
+// Below this many lines a file is analyzed faster than workers can be fed
+CodeSmellDetector.PARALLEL_MIN_LINES = 2000;
+
 module.exports = CodeSmellDetector;
\ No newline at end of file
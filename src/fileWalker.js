@@ -0,0 +1,268 @@
+const fs = require('fs');
+const path = require('path');
+
+const SOURCE_EXTENSIONS = new Set(['.py', '.java']);
+const DEFAULT_CONCURRENCY = 16;
+// Generated-code markers only ever appear in the first lines of a file
+const HEADER_BYTES = 4096;
+// Phrases code generators write into their header comments. Case matters: a
+// hand-written "do not edit this method" must not hide a file from analysis.
+const GENERATED_COMMENT = /Generated by the protocol buffer compiler|DO NOT EDIT|<auto-generated|This file was automatically generated|Code generated by|JavaTM Architecture for XML Binding|generated by JAXB/;
+const GENERATED_ANNOTATION = /^@(?:javax\.annotation\.(?:processing\.)?|jakarta\.annotation\.)?Generated\b/;
+// Lines a generated header may contain besides comments and annotations
+const PREAMBLE = /^(?:package|import|from)\s/;
+
+// Translate a gitignore-style glob into a regular expression over posix paths
+function globToRegExp(glob) {
+  let pattern = '';
+  for (let i = 0; i < glob.length; i++) {
+    const char = glob[i];
+    if (char === '*') {
+      if (glob[i + 1] === '*') {
+        const slashFollows = glob[i + 2] === '/';
+        pattern += slashFollows ? '(?:.*/)?' : '.*';
+        i += slashFollows ? 2 : 1;
+      } else {
+        pattern += '[^/]*';
+      }
+    } else if (char === '?') {
+      pattern += '[^/]';
+    } else if (char === '[') {
+      const end = glob.indexOf(']', i);
+      if (end === -1) {
+        pattern += '\\[';
+      } else {
+        pattern += glob.slice(i, end + 1).replace(/^\[!/, '[^');
+        i = end;
+      }
+    } else {
+      pattern += char.replace(/[.+^${}()|\\]/g, '\\$&');
+    }
+  }
+  return new RegExp(`^${pattern}$`);
+}
+
+// Rules from one .gitignore, matched relative to the directory that holds it
+function parseGitignore(content, baseDir) {
+  const rules = [];
+
+  for (const rawLine of content.split(/\r?\n/)) {
+    let line = rawLine.trim();
+    if (!line || line.startsWith('#')) continue;
+
+    const negate = line.startsWith('!');
+    if (negate) line = line.slice(1);
+
+    const directoryOnly = line.endsWith('/');
+    if (directoryOnly) line = line.slice(0, -1);
+
+    // Without an inner slash a pattern matches at any depth
+    const anchored = line.includes('/');
+    if (line.startsWith('/')) line = line.slice(1);
+
+    rules.push({
+      baseDir,
+      negate,
+      directoryOnly,
+      regex: globToRegExp(anchored ? line : `**/${line}`)
+    });
+  }
+
+  return rules;
+}
+
+function isGitignored(rules, relativePath, isDirectory) {
+  let ignored = false;
+
+  for (const rule of rules) {
+    if (rule.directoryOnly && !isDirectory) continue;
+    if (rule.baseDir && !relativePath.startsWith(`${rule.baseDir}/`)) continue;
+
+    const local = rule.baseDir ? relativePath.slice(rule.baseDir.length + 1) : relativePath;
+    if (rule.regex.test(local)) {
+      ignored = !rule.negate;
+    }
+  }
+
+  return ignored;
+}
+
+// Only the file's header counts: the comments, annotations, package and import
+// lines before the first other line. Markers in later comments or strings are
+// ordinary text.
+function isGeneratedContent(content) {
+  let inBlockComment = false;
+
+  for (const rawLine of content.slice(0, HEADER_BYTES).split('\n')) {
+    const line = rawLine.trim();
+
+    if (inBlockComment) {
+      if (GENERATED_COMMENT.test(line)) return true;
+      inBlockComment = !line.includes('*/');
+    } else if (line.startsWith('/*')) {
+      if (GENERATED_COMMENT.test(line)) return true;
+      inBlockComment = !line.slice(2).includes('*/');
+    } else if (line.startsWith('//') || line.startsWith('#')) {
+      if (GENERATED_COMMENT.test(line)) return true;
+    } else if (line.startsWith('@')) {
+      if (GENERATED_ANNOTATION.test(line)) return true;
+    } else if (line !== '' && !PREAMBLE.test(line)) {
+      return false;
+    }
+  }
+
+  return false;
+}
+
+async function isGeneratedSource(filePath) {
+  const handle = await fs.promises.open(filePath, 'r');
+  try {
+    const buffer = Buffer.alloc(HEADER_BYTES);
+    const { bytesRead } = await handle.read(buffer, 0, HEADER_BYTES, 0);
+    return isGeneratedContent(buffer.toString('utf8', 0, bytesRead));
+  } finally {
+    await handle.close();
+  }
+}
+
+// Async directory walker with bounded concurrency. Source files are yielded as
+// soon as they are discovered, so analysis can start before the walk finishes.
+class FileWalker {
+  constructor(rootDir, options = {}) {
+    this.rootDir = rootDir;
+    this.include = (options.include || []).map(globToRegExp);
+    this.exclude = (options.exclude || []).map(globToRegExp);
+    this.respectGitignore = options.gitignore !== false;
+    this.skipGenerated = options.skipGenerated !== false;
+    this.concurrency = options.concurrency || DEFAULT_CONCURRENCY;
+    this.stats = { directories: 0, files: 0, ignored: 0, generated: 0 };
+    // Paths of the files skipped as generated, so callers can report them
+    this.generatedFiles = [];
+  }
+
+  async *walk() {
+    const found = [];
+    const pendingDirs = [{ dir: this.rootDir, relative: '', rules: [] }];
+    let activeWorkers = 0;
+    let failure = null;
+    let wake = null;
+
+    const notify = () => {
+      if (wake) {
+        const resolve = wake;
+        wake = null;
+        resolve();
+      }
+    };
+
+    const runWorker = async () => {
+      activeWorkers++;
+      try {
+        while (pendingDirs.length > 0 && !failure) {
+          const entry = pendingDirs.shift();
+          for (const item of await this.readDirectory(entry)) {
+            if (item.directory) {
+              pendingDirs.push(item.directory);
+              if (activeWorkers < this.concurrency) runWorker();
+            } else {
+              found.push(item.file);
+              notify();
+            }
+          }
+        }
+      } catch (error) {
+        failure = failure || error;
+      } finally {
+        activeWorkers--;
+        notify();
+      }
+    };
+
+    runWorker();
+
+    while (true) {
+      if (found.length > 0) {
+        yield found.shift();
+      } else if (failure) {
+        throw failure;
+      } else if (activeWorkers === 0 && pendingDirs.length === 0) {
+        return;
+      } else {
+        await new Promise(resolve => { wake = resolve; });
+      }
+    }
+  }
+
+  async collect() {
+    const files = [];
+    for await (const file of this.walk()) {
+      files.push(file);
+    }
+    return files;
+  }
+
+  async readDirectory({ dir, relative, rules }) {
+    this.stats.directories++;
+    const entries = await fs.promises.readdir(dir, { withFileTypes: true });
+
+    if (this.respectGitignore && entries.some(entry => entry.isFile() && entry.name === '.gitignore')) {
+      const content = await fs.promises.readFile(path.join(dir, '.gitignore'), 'utf8');
+      rules = rules.concat(parseGitignore(content, relative));
+    }
+
+    const items = [];
+    for (const entry of entries) {
+      const entryRelative = relative ? `${relative}/${entry.name}` : entry.name;
+      const fullPath = path.join(dir, entry.name);
+
+      if (entry.isDirectory()) {
+        if (entry.name === '.git' || this.isExcludedDirectory(entryRelative, rules)) {
+          this.stats.ignored++;
+          continue;
+        }
+        items.push({ directory: { dir: fullPath, relative: entryRelative, rules } });
+      } else if (entry.isFile() && SOURCE_EXTENSIONS.has(path.extname(entry.name))) {
+        if (!this.isIncludedFile(entryRelative, rules)) {
+          this.stats.ignored++;
+          continue;
+        }
+        if (this.skipGenerated && await isGeneratedSource(fullPath)) {
+          this.stats.generated++;
+          this.generatedFiles.push(fullPath);
+          continue;
+        }
+        this.stats.files++;
+        items.push({ file: fullPath });
+      }
+    }
+
+    return items;
+  }
+
+  // Exclude globs prune whole directories: "**/target/**" matches "a/target/"
+  isExcludedDirectory(relativePath, rules) {
+    if (this.exclude.some(regex => regex.test(`${relativePath}/`) || regex.test(relativePath))) {
+      return true;
+    }
+    return this.respectGitignore && isGitignored(rules, relativePath, true);
+  }
+
+  isIncludedFile(relativePath, rules) {
+    if (this.include.length > 0 && !this.include.some(regex => regex.test(relativePath))) {
+      return false;
+    }
+    if (this.exclude.some(regex => regex.test(relativePath))) {
+      return false;
+    }
+    return !(this.respectGitignore && isGitignored(rules, relativePath, false));
+  }
+}
+
+FileWalker.globToRegExp = globToRegExp;
+FileWalker.parseGitignore = parseGitignore;
+FileWalker.isGitignored = isGitignored;
+FileWalker.isGeneratedSource = isGeneratedSource;
+FileWalker.isGeneratedContent = isGeneratedContent;
+FileWalker.SOURCE_EXTENSIONS = SOURCE_EXTENSIONS;
+
+module.exports = FileWalker;
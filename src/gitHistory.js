@@ -0,0 +1,329 @@
+const { spawn } = require('child_process');
+const path = require('path');
+const CodeSmellDetector = require('./detector');
+const FileWalker = require('./fileWalker');
+
+// Blob reads kept in flight ahead of the one being analyzed
+const PREFETCH = 32;
+// Regular and executable files; symlinks and submodules are not source
+const BLOB_MODES = new Set(['100644', '100755']);
+const NULL_SHA = /^0+$/;
+
+function runGit(args, cwd) {
+  return new Promise((resolve, reject) => {
+    const git = spawn('git', args, { cwd });
+    const chunks = [];
+    let stderr = '';
+
+    git.stdout.on('data', chunk => chunks.push(chunk));
+    git.stderr.on('data', chunk => { stderr += chunk; });
+    git.on('error', reject);
+    git.on('close', code => {
+      if (code !== 0) {
+        reject(new Error(`git ${args[0]} failed: ${stderr.trim() || `exit code ${code}`}`));
+      } else {
+        resolve(Buffer.concat(chunks).toString('utf8'));
+      }
+    });
+  });
+}
+
+// One long-running `git cat-file --batch` process; reads are answered in the
+// order they were requested, so many can be pipelined over the same pipe
+class CatFileBatch {
+  constructor(cwd) {
+    this.process = spawn('git', ['cat-file', '--batch'], { cwd });
+    this.pending = [];
+    this.buffer = Buffer.alloc(0);
+    this.failure = null;
+
+    this.process.stdout.on('data', chunk => {
+      this.buffer = Buffer.concat([this.buffer, chunk]);
+      this.drain();
+    });
+    this.process.on('error', error => this.fail(error));
+    this.process.on('close', code => {
+      if (this.pending.length > 0) this.fail(new Error(`git cat-file exited with code ${code}`));
+    });
+  }
+
+  read(sha) {
+    if (this.failure) return Promise.reject(this.failure);
+    return new Promise((resolve, reject) => {
+      this.pending.push({ sha, resolve, reject });
+      this.process.stdin.write(`${sha}\n`);
+    });
+  }
+
+  // Each reply is "<sha> <type> <size>\n<content>\n" or "<sha> missing\n"
+  drain() {
+    while (this.pending.length > 0) {
+      const newline = this.buffer.indexOf(10);
+      if (newline === -1) return;
+
+      const header = this.buffer.toString('utf8', 0, newline).split(' ');
+      if (header[1] === 'missing') {
+        this.buffer = this.buffer.subarray(newline + 1);
+        this.pending.shift().reject(new Error(`Object ${header[0]} is missing`));
+        continue;
+      }
+
+      const size = parseInt(header[2], 10);
+      const end = newline + 1 + size;
+      if (this.buffer.length < end + 1) return;
+
+      const content = this.buffer.toString('utf8', newline + 1, end);
+      this.buffer = this.buffer.subarray(end + 1);
+      this.pending.shift().resolve(content);
+    }
+  }
+
+  fail(error) {
+    this.failure = error;
+    for (const entry of this.pending.splice(0)) entry.reject(error);
+  }
+
+  close() {
+    this.process.stdin.end();
+  }
+}
+
+// Smell trends over the last N first-parent commits, read straight from the
+// object database. Each distinct blob is analyzed once, whatever the number
+// of commits and paths it appears under, so cost follows unique file versions.
+class HistorySweep {
+  constructor(repoDir, config, options = {}) {
+    this.repoDir = repoDir;
+    this.ref = options.ref || 'HEAD';
+    this.limit = options.limit || 500;
+    this.skipGenerated = options.skipGenerated !== false;
+    // Committed files are matched against include/exclude only; .gitignore does not apply
+    this.walker = new FileWalker(repoDir, { ...options.fileRules, gitignore: false });
+    // Per-file type inference: a project symbol index would be needed per commit
+    this.detector = new CodeSmellDetector(config, { jobs: options.jobs });
+    this.smellTypes = Object.keys(config.smells).filter(smell => config.smells[smell]);
+    this.blobCounts = new Map();
+    this.stats = { uniqueBlobs: 0, analyzed: 0, generated: 0, failed: 0, fileVersions: 0 };
+  }
+
+  async run() {
+    const startTime = Date.now();
+    const commits = await this.listCommits();
+    if (commits.length === 0) {
+      return this.report([], startTime);
+    }
+
+    // The oldest commit's full tree is the baseline; later commits are diffs
+    const tree = await this.listTree(commits[0].commit);
+    await this.analyzeBlobs(tree, commits);
+
+    const totals = { files: 0, filesWithSmells: 0, totalSmells: 0, byType: {} };
+    this.smellTypes.forEach(type => { totals.byType[type] = 0; });
+    for (const blobKey of tree.values()) {
+      this.applyCounts(totals, this.blobCounts.get(blobKey), 1);
+    }
+
+    const history = commits.map((commit, index) => {
+      const changes = index === 0 ? [] : this.applyChanges(tree, totals, commit.changes);
+      this.stats.fileVersions += totals.files;
+
+      return {
+        commit: commit.commit,
+        date: new Date(commit.timestamp * 1000).toISOString(),
+        subject: commit.subject,
+        files: totals.files,
+        filesWithSmells: totals.filesWithSmells,
+        totalSmells: totals.totalSmells,
+        byType: { ...totals.byType },
+        changes
+      };
+    });
+
+    return this.report(history, startTime);
+  }
+
+  // Oldest first, each with its raw diff against its first parent. Paths are
+  // relative to repoDir, and changes outside it are dropped (--relative).
+  async listCommits() {
+    const output = await runGit([
+      'log', `-n${this.limit}`, '--reverse', '--first-parent', '--diff-merges=first-parent',
+      '--raw', '--no-renames', '--no-abbrev', '--relative', '-z',
+      '--format=%x01%H %ct %s', this.ref
+    ], this.repoDir);
+
+    return output.split('\x01').filter(record => record.length > 0).map(record => {
+      const headerEnd = record.indexOf('\0');
+      const header = headerEnd === -1 ? record : record.slice(0, headerEnd);
+      const [commit, timestamp, ...subject] = header.split(' ');
+      const tokens = headerEnd === -1 ? [] : record.slice(headerEnd + 1).replace(/^\n/, '').split('\0');
+      const changes = [];
+
+      // ":<old mode> <new mode> <old sha> <new sha> <status>" then the path
+      for (let i = 0; i + 1 < tokens.length; i += 2) {
+        const [, newMode, , newSha, status] = tokens[i].slice(1).split(' ');
+        const filePath = tokens[i + 1];
+        if (!this.isTracked(filePath)) continue;
+
+        const present = status !== 'D' && BLOB_MODES.has(newMode) && !NULL_SHA.test(newSha);
+        changes.push({ path: filePath, blobKey: present ? this.blobKey(newSha, filePath) : null });
+      }
+
+      return { commit, timestamp: parseInt(timestamp, 10), subject: subject.join(' '), changes };
+    });
+  }
+
+  async listTree(commit) {
+    const output = await runGit(['ls-tree', '-r', '-z', commit], this.repoDir);
+    const tree = new Map();
+
+    for (const entry of output.split('\0')) {
+      if (!entry) continue;
+      const tab = entry.indexOf('\t');
+      const [mode, type, sha] = entry.slice(0, tab).split(' ');
+      const filePath = entry.slice(tab + 1);
+
+      if (type === 'blob' && BLOB_MODES.has(mode) && this.isTracked(filePath)) {
+        tree.set(filePath, this.blobKey(sha, filePath));
+      }
+    }
+
+    return tree;
+  }
+
+  isTracked(filePath) {
+    return FileWalker.SOURCE_EXTENSIONS.has(path.extname(filePath)) && this.walker.isIncludedFile(filePath, []);
+  }
+
+  // The same content is parsed differently as .py and .java
+  blobKey(sha, filePath) {
+    return `${sha}:${path.extname(filePath)}`;
+  }
+
+  async analyzeBlobs(tree, commits) {
+    const keys = new Set(tree.values());
+    for (const commit of commits.slice(1)) {
+      for (const change of commit.changes) {
+        if (change.blobKey) keys.add(change.blobKey);
+      }
+    }
+
+    const queue = [...keys];
+    this.stats.uniqueBlobs = queue.length;
+    const reader = new CatFileBatch(this.repoDir);
+
+    try {
+      const reads = [];
+      const readAt = index => {
+        if (index < queue.length) reads[index] = reader.read(queue[index].split(':')[0]).catch(error => error);
+      };
+      for (let i = 0; i < PREFETCH; i++) readAt(i);
+
+      for (let i = 0; i < queue.length; i++) {
+        const content = await reads[i];
+        reads[i] = null;
+        readAt(i + PREFETCH);
+        this.blobCounts.set(queue[i], await this.analyzeBlob(queue[i], content));
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  // Smell counts for one blob, or null when it is generated or cannot be analyzed
+  async analyzeBlob(blobKey, content) {
+    const [sha, extension] = blobKey.split(':');
+    if (content instanceof Error) {
+      console.warn(`Warning: Could not read blob ${sha}: ${content.message}`);
+      this.stats.failed++;
+      return null;
+    }
+    if (this.skipGenerated && FileWalker.isGeneratedContent(content)) {
+      this.stats.generated++;
+      return null;
+    }
+
+    try {
+      const result = await this.detector.analyzeContent(content, `${sha}${extension}`);
+      const counts = { total: result.detected.length, byType: {} };
+      for (const smell of result.detected) {
+        counts.byType[smell.type] = (counts.byType[smell.type] || 0) + 1;
+      }
+      this.stats.analyzed++;
+      return counts;
+    } catch (error) {
+      console.warn(`Warning: Could not analyze blob ${sha}: ${error.message}`);
+      this.stats.failed++;
+      return null;
+    }
+  }
+
+  applyCounts(totals, counts, sign) {
+    if (!counts) return;
+
+    totals.files += sign;
+    totals.totalSmells += sign * counts.total;
+    if (counts.total > 0) totals.filesWithSmells += sign;
+    for (const [type, count] of Object.entries(counts.byType)) {
+      totals.byType[type] = (totals.byType[type] || 0) + sign * count;
+    }
+  }
+
+  // Update the running tree and totals, returning the per-file deltas
+  applyChanges(tree, totals, changes) {
+    const deltas = [];
+
+    for (const change of changes) {
+      const before = tree.has(change.path) ? this.blobCounts.get(tree.get(change.path)) : null;
+      const after = change.blobKey ? this.blobCounts.get(change.blobKey) : null;
+
+      if (change.blobKey) {
+        tree.set(change.path, change.blobKey);
+      } else {
+        tree.delete(change.path);
+      }
+      this.applyCounts(totals, before, -1);
+      this.applyCounts(totals, after, 1);
+
+      // Generated or unreadable on both sides: nothing to report
+      if (!before && !after) continue;
+
+      const byType = {};
+      for (const type of new Set([...Object.keys(before ? before.byType : {}), ...Object.keys(after ? after.byType : {})])) {
+        const delta = (after ? after.byType[type] || 0 : 0) - (before ? before.byType[type] || 0 : 0);
+        if (delta !== 0) byType[type] = delta;
+      }
+
+      deltas.push({
+        path: change.path,
+        status: !before ? 'added' : (!after ? 'deleted' : 'modified'),
+        smellsBefore: before ? before.total : 0,
+        smellsAfter: after ? after.total : 0,
+        delta: (after ? after.total : 0) - (before ? before.total : 0),
+        byType
+      });
+    }
+
+    return deltas;
+  }
+
+  report(history, startTime) {
+    return {
+      repository: this.repoDir,
+      ref: this.ref,
+      mode: 'history',
+      commits: history.length,
+      // fileVersions / uniqueBlobs is the work saved by blob deduplication
+      fileVersions: this.stats.fileVersions,
+      uniqueBlobs: this.stats.uniqueBlobs,
+      analyzedBlobs: this.stats.analyzed,
+      generatedBlobs: this.stats.generated,
+      failedBlobs: this.stats.failed,
+      elapsedMs: Date.now() - startTime,
+      history
+    };
+  }
+}
+
+HistorySweep.CatFileBatch = CatFileBatch;
+
+module.exports = HistorySweep;
@@ -1,10 +1,19 @@
 #!/usr/bin/env node
 
+// Cache compiled bytecode between runs (Node 22.1+); older versions just skip it
+const nodeModule = require('module');
+if (typeof nodeModule.enableCompileCache === 'function') {
+  nodeModule.enableCompileCache();
+}
+
 const { Command } = require('commander');
 const fs = require('fs');
 const path = require('path');
-const yaml = require('js-yaml');
 const CodeSmellDetector = require('./detector');
+const { loadCachedConfig } = require('./configCache');
+
+// Modules only some modes need (js-yaml, symbol index, walker, top-K, sampling)
+// are required where they are used, so a single-file run loads as little as possible
 
 const program = new Command();
 
@@ -21,12 +30,36 @@ program
   .option('--only <smells>', 'comma-separated list of smells to detect only')
   .option('--exclude <smells>', 'comma-separated list of smells to exclude')
   .option('-v, --verbose', 'verbose output')
-  .option('--report <file>', 'save report to file');
+  .option('--report <file>', 'save report to file')
+  .option('--index-cache <file>', 'symbol index cache for directory mode (default: per-user cache keyed by the directory)')
+  .option('--no-index', 'disable the project symbol index used by FeatureEnvy')
+  .option('--top <k>', 'report only the K worst smells, ranked by severity and magnitude', parseInt)
+  .option('--top-per-type', 'with --top, keep the K worst smells of each smell type')
+  .option('--sample', 'estimate smell density from a stratified random sample of files')
+  .option('--precision <ratio>', 'with --sample, stop at this relative 95% CI half-width', parseFloat, 0.05)
+  .option('--time-budget <seconds>', 'with --sample, stop after this many seconds', parseFloat)
+  .option('--seed <n>', 'with --sample, random seed for a reproducible sample', parseInt)
+  .option('--history <commits>', 'with -d, chart smell counts over the last N first-parent commits of a git repository', parseInt)
+  .option('--ref <rev>', 'with --history, revision to walk back from', 'HEAD')
+  .option('--calibrate', 'with -d, derive thresholds from percentiles of the project\'s own metric distributions')
+  .option('--sketch-file <file>', 'with --calibrate, where to save the quantile sketches (default: <dir>/.code-smell-calibration.json)')
+  .option('--merge-sketches <files>', 'with --calibrate, comma-separated sketch files from other runs to merge in')
+  .option('--calibrated <file>', 'use thresholds computed from a saved calibration sketch file')
+  .option('-j, --jobs <n>', 'worker threads to split a single large file across', parseInt)
+  .option('--socket <path>', 'analysis daemon socket (default: $CODE_SMELL_DAEMON_SOCKET or a per-user temp path)')
+  .option('--no-daemon', 'always analyze in-process, even when a daemon is running');
+
+program
+  .command('daemon')
+  .description('keep analyzers warm and serve analysis requests over a local socket')
+  .option('--idle-timeout <minutes>', 'exit after this many minutes without requests', parseFloat)
+  .option('--status', 'report whether a daemon is running')
+  .option('--stop', 'stop the running daemon')
+  .action(runDaemon);
 
 async function loadConfig(configPath) {
   try {
-    const configFile = fs.readFileSync(configPath, 'utf8');
-    return yaml.load(configFile);
+    return loadCachedConfig(configPath, content => require('js-yaml').load(content));
   } catch (error) {
     console.warn(`Warning: Could not load config file ${configPath}. Using defaults.`);
     return getDefaultConfig();
@@ -45,9 +78,12 @@ function getDefaultConfig() {
     },
     thresholds: {
       LongMethod: 40,
+      LongMethodCyclomatic: 10,
+      LongMethodCognitive: 15,
       LargeParameterList: 5,
       GodClassMethods: 10,
       GodClassFields: 15,
+      GodClassLCOM4: 3,
       DuplicatedCodeSimilarity: 0.8,
       FeatureEnvyThreshold: 3
     },
@@ -55,7 +91,21 @@ function getDefaultConfig() {
       format: 'json',
       includeLineNumbers: true,
       verboseMode: false
-    }
+    },
+    analysis: {
+      ignoreComments: true,
+      ignoreEmptyLines: true
+    },
+    files: getDefaultFileRules()
+  };
+}
+
+function getDefaultFileRules() {
+  return {
+    include: ['**/*.java', '**/*.py'],
+    exclude: ['**/node_modules/**', '**/target/**', '**/build/**', '**/.gradle/**', '**/__pycache__/**'],
+    respectGitignore: true,
+    skipGenerated: true
   };
 }
 
@@ -115,9 +165,9 @@ function formatMarkdownReport(results, verbose = false) {
   return report;
 }
 
-async function analyzeFile(filePath, config) {
+async function analyzeFile(filePath, config, symbolIndex = null, topK = null, jobs = 1) {
   try {
-    const detector = new CodeSmellDetector(config);
+    const detector = new CodeSmellDetector(config, { symbolIndex, topK, jobs });
     return await detector.analyze(filePath);
   } catch (error) {
     console.error(`Error analyzing ${filePath}:`, error.message);
@@ -125,32 +175,260 @@ async function analyzeFile(filePath, config) {
   }
 }
 
-async function analyzeDirectory(dirPath, config) {
+function createFileWalker(dirPath, config) {
+  const FileWalker = require('./fileWalker');
+  const rules = { ...getDefaultFileRules(), ...(config.files || {}) };
+  return new FileWalker(dirPath, {
+    include: rules.include,
+    exclude: rules.exclude,
+    gitignore: rules.respectGitignore,
+    skipGenerated: rules.skipGenerated
+  });
+}
+
+function needsSymbolIndex(config, options) {
+  return Boolean(config.smells.FeatureEnvy) && options.index !== false;
+}
+
+// Index every class in the project first so FeatureEnvy can resolve types across files
+async function buildSymbolIndex(dirPath, files, config, options) {
+  const SymbolIndex = require('./symbolIndex');
+  // The analyzed tree is only written to when --index-cache asks for it
+  const cacheFile = options.indexCache || SymbolIndex.cacheFileFor(dirPath);
+  const symbolIndex = new SymbolIndex(dirPath, cacheFile);
+  const stats = await symbolIndex.build(files);
+
+  if (config.output.verboseMode) {
+    console.error(`Symbol index: ${symbolIndex.classes.size} classes from ${stats.files} files (${stats.reparsed} reparsed)`);
+  }
+
+  return symbolIndex;
+}
+
+// Skipping generated sources must never be silent: a false positive would
+// otherwise just make a hand-written file disappear from the report
+function reportGeneratedFiles(walker, config) {
+  if (walker.generatedFiles.length === 0) return;
+
+  console.error(`Skipped ${walker.generatedFiles.length} generated file(s); set files.skipGenerated: false to analyze them`);
+  if (config.output.verboseMode) {
+    walker.generatedFiles.forEach(filePath => console.error(`  generated: ${filePath}`));
+  }
+}
+
+async function analyzeDirectory(dirPath, config, options = {}) {
   const results = [];
-  const files = fs.readdirSync(dirPath, { withFileTypes: true });
-  
-  for (const file of files) {
-    const fullPath = path.join(dirPath, file.name);
-    
-    if (file.isDirectory()) {
-      const subResults = await analyzeDirectory(fullPath, config);
-      results.push(...subResults);
-    } else if (file.name.endsWith('.py') || file.name.endsWith('.java')) {
-      const result = await analyzeFile(fullPath, config);
-      if (result) {
-        results.push(result);
+  const walker = createFileWalker(dirPath, config);
+  let files;
+  let symbolIndex = null;
+
+  // The index must be complete before any FeatureEnvy pass; without it files
+  // are analyzed as soon as the walker discovers them
+  if (needsSymbolIndex(config, options)) {
+    files = await walker.collect();
+    symbolIndex = await buildSymbolIndex(dirPath, files, config, options);
+  } else {
+    files = walker.walk();
+  }
+
+  for await (const filePath of files) {
+    const result = await analyzeFile(filePath, config, symbolIndex, options.topK, options.jobs);
+    if (!result) continue;
+
+    if (options.topK) {
+      // Only the collector's O(K) heap outlives each file
+      options.topK.offerResult(result);
+    } else {
+      results.push(result);
+    }
+  }
+
+  if (config.output.verboseMode) {
+    const { directories, files: analyzed, ignored, generated } = walker.stats;
+    console.error(`Walked ${directories} directories: ${analyzed} files analyzed, ${ignored} ignored, ${generated} generated skipped`);
+  }
+  reportGeneratedFiles(walker, config);
+
+  // Discovery order depends on I/O timing; keep reports stable
+  return results.sort((a, b) => a.filePath.localeCompare(b.filePath));
+}
+
+// Analyze files drawn from a stratified sample until the estimate is precise
+// enough, the time budget is spent or every file has been analyzed
+async function sampleDirectory(dirPath, config, options = {}) {
+  const { StratifiedSampler } = require('./sampling');
+  const startTime = Date.now();
+  const walker = createFileWalker(dirPath, config);
+  const paths = await walker.collect();
+  reportGeneratedFiles(walker, config);
+  const files = await Promise.all(paths.map(async filePath => ({
+    path: filePath,
+    size: (await fs.promises.stat(filePath)).size
+  })));
+
+  const sampler = new StratifiedSampler(files, dirPath, {
+    seed: options.seed,
+    smellTypes: Object.keys(config.smells).filter(smell => config.smells[smell])
+  });
+  const deadline = options.timeBudget ? startTime + options.timeBudget * 1000 : Infinity;
+  let stoppedBy = 'exhausted';
+
+  let file;
+  while ((file = sampler.next()) !== null) {
+    // The symbol index would read every file, so sampled runs use per-file type inference
+    sampler.record(file, await analyzeFile(file.path, config));
+
+    if (sampler.isPrecise(options.precision)) {
+      stoppedBy = 'precision';
+      break;
+    }
+    if (Date.now() >= deadline) {
+      stoppedBy = 'time';
+      break;
+    }
+  }
+
+  return {
+    directory: dirPath,
+    mode: 'sample',
+    stoppedBy,
+    elapsedMs: Date.now() - startTime,
+    ...sampler.report()
+  };
+}
+
+// Read every commit's files from the object database instead of checking them out
+async function sweepHistory(dirPath, config, options = {}) {
+  const HistorySweep = require('./gitHistory');
+  const rules = { ...getDefaultFileRules(), ...(config.files || {}) };
+  const sweep = new HistorySweep(dirPath, config, {
+    ref: options.ref,
+    limit: options.history,
+    fileRules: { include: rules.include, exclude: rules.exclude },
+    skipGenerated: rules.skipGenerated,
+    jobs: options.jobs
+  });
+  return sweep.run();
+}
+
+// One pass over the directory feeding every measurement into t-digest sketches;
+// thresholds are read off the merged sketches at the configured percentiles
+async function calibrateDirectory(dirPath, config, options = {}) {
+  const Calibrator = require('./calibration');
+  const startTime = Date.now();
+  const calibrator = new Calibrator();
+
+  if (dirPath) {
+    // Parsing only: no analyzer needs to be loaded
+    const detector = new CodeSmellDetector({ ...config, smells: {} });
+    const walker = createFileWalker(dirPath, config);
+    for await (const filePath of walker.walk()) {
+      try {
+        const content = await fs.promises.readFile(filePath, 'utf8');
+        calibrator.observe(detector.parseFile(content, path.extname(filePath)));
+      } catch (error) {
+        console.warn(`Warning: Could not calibrate on ${filePath}: ${error.message}`);
       }
     }
+    reportGeneratedFiles(walker, config);
   }
-  
-  return results;
+
+  const merged = options.mergeSketches ? options.mergeSketches.split(',').map(s => s.trim()) : [];
+  for (const sketchFile of merged) {
+    calibrator.merge(Calibrator.load(sketchFile));
+  }
+
+  const sketchFile = options.sketchFile || path.join(dirPath || '.', '.code-smell-calibration.json');
+  calibrator.save(sketchFile);
+
+  return {
+    directory: dirPath || null,
+    mode: 'calibrate',
+    files: calibrator.files,
+    mergedSketches: merged,
+    sketchFile,
+    elapsedMs: Date.now() - startTime,
+    percentiles: calibrationPercentiles(config),
+    thresholds: calibrator.thresholds(calibrationPercentiles(config)),
+    metrics: calibrator.summary()
+  };
 }
 
-async function main() {
-  program.parse();
+function calibrationPercentiles(config) {
+  return (config.calibration && config.calibration.percentiles) || {};
+}
+
+// Replace the fixed thresholds with ones read from a saved sketch file
+function applyCalibration(config, sketchFile) {
+  const Calibrator = require('./calibration');
+  const thresholds = Calibrator.load(sketchFile).thresholds(calibrationPercentiles(config));
+  config.thresholds = { ...config.thresholds, ...thresholds };
+  return config;
+}
+
+function createTopK(options) {
+  const { TopKCollector } = require('./topK');
+  return new TopKCollector(options.top, options.topPerType);
+}
+
+// Cold runs pay module loading and JIT warm-up on every call; a resident
+// daemon pays them once. Only single-file analysis is forwarded.
+async function runDaemon(daemonOptions) {
+  const { AnalysisDaemon, sendRequest, defaultSocketPath } = require('./daemon');
+  // --socket is a program-level option shared with the forwarding client
+  const socketPath = program.opts().socket || defaultSocketPath();
+  if (!socketPath) {
+    console.error('Error: No private temp directory for the daemon socket; pass --socket');
+    process.exit(1);
+  }
+
+  if (daemonOptions.status || daemonOptions.stop) {
+    const response = await sendRequest(socketPath, { type: daemonOptions.stop ? 'shutdown' : 'ping' });
+    if (!response) {
+      console.error(`No daemon listening on ${socketPath}`);
+      process.exit(1);
+    }
+    console.log(daemonOptions.stop ? `Daemon on ${socketPath} stopped` : JSON.stringify(response, null, 2));
+    return;
+  }
+
+  const daemon = new AnalysisDaemon({
+    socketPath,
+    loadConfig: configPath => loadCachedConfig(configPath, content => require('js-yaml').load(content)),
+    applyOverrides: applyCliOverrides,
+    idleTimeout: daemonOptions.idleTimeout ? daemonOptions.idleTimeout * 60 * 1000 : 0
+  });
+
+  try {
+    await daemon.start();
+  } catch (error) {
+    console.error('Error:', error.message);
+    process.exit(1);
+  }
+
+  const shutdown = () => daemon.stop().then(() => process.exit(0));
+  process.on('SIGINT', shutdown);
+  process.on('SIGTERM', shutdown);
+  console.error(`Daemon listening on ${socketPath}`);
+}
+
+async function analyzeSingleFile(filePath, config, options, topK) {
+  // The daemon applies config.yaml thresholds, not calibrated ones
+  if (options.daemon !== false && !options.calibrated) {
+    const { analyzeViaDaemon, defaultSocketPath } = require('./daemon');
+    const overrides = { only: options.only, exclude: options.exclude, output: options.output, verbose: options.verbose };
+    const result = await analyzeViaDaemon(filePath, options.config, overrides, options.socket || defaultSocketPath(), options.jobs);
+    if (result) return result;
+  }
+
+  return analyzeFile(filePath, config, null, topK, options.jobs);
+}
+
+async function runAnalysis() {
   const options = program.opts();
 
-  if (!options.file && !options.directory) {
+  // Merging saved sketches alone needs no directory
+  if (!options.file && !options.directory && !(options.calibrate && options.mergeSketches)) {
     console.error('Error: Please specify a file (-f) or directory (-d) to analyze');
     process.exit(1);
   }
@@ -160,6 +438,26 @@ async function main() {
     const config = await loadConfig(options.config);
     const finalConfig = applyCliOverrides(config, options);
 
+    if (options.calibrated) {
+      applyCalibration(finalConfig, options.calibrated);
+    }
+
+    if (options.calibrate) {
+      if (options.directory && !fs.existsSync(options.directory)) {
+        console.error(`Error: Directory ${options.directory} does not exist`);
+        process.exit(1);
+      }
+
+      const output = JSON.stringify(await calibrateDirectory(options.directory, finalConfig, options), null, 2);
+      if (options.report) {
+        fs.writeFileSync(options.report, output);
+        console.log(`Report saved to ${options.report}`);
+      } else {
+        console.log(output);
+      }
+      return;
+    }
+
     let results;
 
     if (options.file) {
@@ -169,11 +467,25 @@ async function main() {
         process.exit(1);
       }
 
-      results = await analyzeFile(options.file, finalConfig);
+      const topK = options.top ? createTopK(options) : null;
+      results = await analyzeSingleFile(options.file, finalConfig, options, topK);
       if (!results) {
         process.exit(1);
       }
 
+      if (topK) {
+        // The admit hook already dropped some candidates, so the summary can
+        // only describe the K smells reported
+        topK.offerResult(results);
+        results.detected = topK.results().map(({ filePath, ...smell }) => smell);
+        results.activeSmells = [...new Set(results.detected.map(smell => smell.type))];
+        results.summary = {
+          ...results.summary,
+          totalSmells: results.detected.length,
+          uniqueSmellTypes: results.activeSmells.length
+        };
+      }
+
       // Format and output results
       const output = formatOutput(results, finalConfig.output.format, finalConfig.output.verboseMode);
       
@@ -190,10 +502,30 @@ async function main() {
         process.exit(1);
       }
 
-      results = await analyzeDirectory(options.directory, finalConfig);
+      if (options.sample || options.history) {
+        const report = options.sample
+          ? await sampleDirectory(options.directory, finalConfig, options)
+          : await sweepHistory(options.directory, finalConfig, options);
+        const output = JSON.stringify(report, null, 2);
+        if (options.report) {
+          fs.writeFileSync(options.report, output);
+          console.log(`Report saved to ${options.report}`);
+        } else {
+          console.log(output);
+        }
+        return;
+      }
+
+      const topK = options.top ? createTopK(options) : null;
+      results = await analyzeDirectory(options.directory, finalConfig, { ...options, topK });
       
       // Create summary report
-      const summary = {
+      const summary = topK ? {
+        directory: options.directory,
+        totalFiles: topK.filesAnalyzed,
+        filesWithSmells: topK.filesWithSmells,
+        top: topK.results()
+      } : {
         directory: options.directory,
         totalFiles: results.length,
         filesWithSmells: results.filter(r => r.detected.length > 0).length,
@@ -216,8 +548,13 @@ async function main() {
   }
 }
 
+async function main() {
+  program.action(runAnalysis);
+  await program.parseAsync();
+}
+
 if (require.main === module) {
   main();
 }
 
-module.exports = { loadConfig, formatOutput, analyzeFile };
\ No newline at end of file
+module.exports = { loadConfig, formatOutput, analyzeFile, analyzeDirectory, sampleDirectory, sweepHistory, calibrateDirectory };
\ No newline at end of file
@@ -0,0 +1,180 @@
+const path = require('path');
+const { Worker } = require('worker_threads');
+
+// More block shards than workers evens out rows that hit many duplicates
+const BLOCK_SHARDS_PER_WORKER = 2;
+
+let sharedPool = null;
+let nextJobId = 0;
+
+// Long-lived worker threads shared by every detector in the process. Workers
+// are unref'd while idle so an idle pool never keeps the process alive.
+class AnalysisPool {
+  constructor(size) {
+    this.size = size;
+    this.idle = [];
+    this.queue = [];
+    this.running = new Map();
+    this.workerCount = 0;
+    this.nextTaskId = 0;
+  }
+
+  run(job, task) {
+    return new Promise((resolve, reject) => {
+      this.queue.push({ id: this.nextTaskId++, job, task, resolve, reject });
+      this.dispatch();
+    });
+  }
+
+  dispatch() {
+    while (this.queue.length > 0) {
+      let worker = this.idle.pop();
+      if (!worker) {
+        if (this.workerCount >= this.size) return;
+        worker = this.spawn();
+      }
+
+      const entry = this.queue.shift();
+      this.running.set(worker, entry);
+      worker.ref();
+      worker.postMessage({ id: entry.id, job: entry.job, task: entry.task });
+    }
+  }
+
+  spawn() {
+    const worker = new Worker(path.join(__dirname, 'analysisWorker.js'));
+    this.workerCount++;
+
+    worker.on('message', ({ error, smells }) => {
+      const entry = this.running.get(worker);
+      this.running.delete(worker);
+      worker.unref();
+      this.idle.push(worker);
+
+      if (error) {
+        entry.reject(new Error(error));
+      } else {
+        entry.resolve(smells);
+      }
+      this.dispatch();
+    });
+
+    // A worker that crashes or exits fails its task and is replaced on the next
+    // dispatch; 'exit' also follows 'error', so each worker is retired once
+    let retired = false;
+    const retire = error => {
+      if (retired) return;
+      retired = true;
+      this.workerCount--;
+
+      const idleIndex = this.idle.indexOf(worker);
+      if (idleIndex !== -1) this.idle.splice(idleIndex, 1);
+      const entry = this.running.get(worker);
+      this.running.delete(worker);
+      if (entry) entry.reject(error);
+      this.dispatch();
+    };
+    worker.on('error', retire);
+    worker.on('exit', code => retire(new Error(`Analysis worker exited with code ${code}`)));
+
+    return worker;
+  }
+}
+
+function getPool(size) {
+  if (!sharedPool || sharedPool.size !== size) {
+    sharedPool = new AnalysisPool(size);
+  }
+  return sharedPool;
+}
+
+// Functions and classes without their bodies; workers cut the bodies out of
+// the shared source by line range, so no task copies the file again
+const withoutContent = records => records.map(({ content, ...record }) => record);
+
+// The part of the main thread's parse a task reads, so workers never parse the
+// file again; line scans (MagicNumbers, duplicated blocks) need only the source
+function parseFor(smellType, parseResult) {
+  switch (smellType) {
+    case 'LongMethod':
+    case 'LargeParameterList':
+    case 'DuplicatedCode':
+      return { functions: withoutContent(parseResult.functions) };
+    case 'GodClass':
+    case 'FeatureEnvy':
+      return { functions: withoutContent(parseResult.functions), classes: withoutContent(parseResult.classes) };
+    default:
+      return {};
+  }
+}
+
+// Split rows 0..rowCount-1 into contiguous ranges of about equal work, where
+// row i of a pairwise comparison costs rowCount - i comparisons
+function splitRows(rowCount, shards) {
+  const ranges = [];
+  const total = rowCount * (rowCount + 1) / 2;
+  let start = 0;
+  let done = 0;
+
+  for (let shard = 1; shard <= shards && start < rowCount; shard++) {
+    const target = total * shard / shards;
+    let end = start;
+    while (end < rowCount && (done < target || end === start)) {
+      done += rowCount - end;
+      end++;
+    }
+    if (shard === shards) end = rowCount;
+
+    ranges.push([start, end]);
+    start = end;
+  }
+
+  return ranges;
+}
+
+// Parallel counterpart of CodeSmellDetector.runAnalyzers: independent analyzers
+// run concurrently in workers, DuplicatedCode's pairwise comparisons are sharded
+// by row ranges, and results are merged in analyzer and row order, so the output
+// matches a serial run. FeatureEnvy stays on this thread when it needs the
+// project symbol index, and workers ignore top-K admission (the collector
+// still settles what is kept).
+async function runAnalyzersInWorkers(detector, parseResult, content, filePath) {
+  const pool = getPool(detector.jobs);
+  const source = new SharedArrayBuffer(Buffer.byteLength(content));
+  Buffer.from(source).write(content);
+  const job = { id: nextJobId++, source, filePath, language: parseResult.language, config: detector.config };
+
+  const entries = Object.entries(detector.analyzers);
+  const pending = entries.map(([smellType, analyzer]) => {
+    let result;
+
+    if (smellType === 'DuplicatedCode') {
+      const parse = parseFor(smellType, parseResult);
+      const blockCount = Math.max(0, parseResult.lines.length - analyzer.minLineCount + 1);
+      const shards = [
+        ...splitRows(parseResult.functions.length, pool.size)
+          .map(([rowStart, rowEnd]) => pool.run(job, { type: 'duplicatedFunctions', parse, rowStart, rowEnd })),
+        ...splitRows(blockCount, pool.size * BLOCK_SHARDS_PER_WORKER)
+          .map(([rowStart, rowEnd]) => pool.run(job, { type: 'duplicatedBlocks', rowStart, rowEnd }))
+      ];
+      result = Promise.all(shards).then(parts => parts.flat());
+    } else if (smellType === 'FeatureEnvy' && detector.symbolIndex) {
+      // Deferred so every worker task is posted before this thread gets busy
+      result = Promise.resolve().then(() => analyzer.analyze(parseResult, content, filePath));
+    } else {
+      result = pool.run(job, { type: 'analyzer', smellType, parse: parseFor(smellType, parseResult) });
+    }
+
+    return result.catch(error => {
+      console.warn(`Warning: ${smellType} analyzer failed:`, error.message);
+      return null;
+    });
+  });
+
+  const results = await Promise.all(pending);
+  return entries
+    .map(([smellType], index) => [smellType, results[index]])
+    .filter(([, smells]) => smells !== null);
+}
+
+module.exports = { runAnalyzersInWorkers, splitRows, AnalysisPool };
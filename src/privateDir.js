@@ -0,0 +1,57 @@
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const crypto = require('crypto');
+
+// Caches and the daemon socket live under the shared temp dir, where another
+// local user could pre-create the paths we use. Everything goes into one
+// directory per user, created 0700, and is only trusted while that directory
+// is still a real directory owned by us that nobody else can enter.
+
+const uid = typeof process.getuid === 'function' ? process.getuid() : null;
+
+// Ownership and permission bits are not meaningful on Windows
+function isPrivateDir(dir) {
+  let stat;
+  try {
+    // lstat: a symlink planted in place of the directory is not followed
+    stat = fs.lstatSync(dir);
+  } catch (error) {
+    return false;
+  }
+
+  if (!stat.isDirectory()) return false;
+  if (uid === null) return true;
+  return stat.uid === uid && (stat.mode & 0o077) === 0;
+}
+
+// Creates dir (mode 0700) if needed; null when it exists but is not private
+function ensurePrivateDir(dir) {
+  try {
+    fs.mkdirSync(dir, { recursive: true, mode: 0o700 });
+  } catch (error) {
+    return null;
+  }
+  return isPrivateDir(dir) ? dir : null;
+}
+
+// This user's directory under the system temp dir, or null if it is unusable
+function privateTempDir() {
+  const owner = uid !== null ? uid : os.userInfo().username;
+  return ensurePrivateDir(path.join(os.tmpdir(), `code-smell-detector-${owner}`));
+}
+
+// Readers see either the old file or the new one, never a partial write
+function writeFileAtomic(filePath, data) {
+  const tempFile = `${filePath}.${process.pid}.${crypto.randomBytes(4).toString('hex')}.tmp`;
+  fs.writeFileSync(tempFile, data, { mode: 0o600, flag: 'wx' });
+
+  try {
+    fs.renameSync(tempFile, filePath);
+  } catch (error) {
+    fs.rmSync(tempFile, { force: true });
+    throw error;
+  }
+}
+
+module.exports = { privateTempDir, ensurePrivateDir, isPrivateDir, writeFileAtomic };
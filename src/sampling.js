@@ -0,0 +1,234 @@
+const path = require('path');
+
+const Z_95 = 1.96;
+const SIZE_BUCKETS = [4 * 1024, 16 * 1024, 64 * 1024]; // bytes
+const MIN_SAMPLES = 30;
+
+// Small seeded PRNG (mulberry32) so a sampled run can be reproduced
+function createRandom(seed) {
+  let state = seed >>> 0;
+  return () => {
+    state = (state + 0x6D2B79F5) >>> 0;
+    let t = state;
+    t = Math.imul(t ^ (t >>> 15), t | 1);
+    t ^= t + Math.imul(t ^ (t >>> 7), t | 61);
+    return ((t ^ (t >>> 14)) >>> 0) / 4294967296;
+  };
+}
+
+function sizeBucket(size) {
+  const index = SIZE_BUCKETS.findIndex(limit => size < limit);
+  return index === -1 ? SIZE_BUCKETS.length : index;
+}
+
+// Mean and sample variance of a list of numbers
+function moments(values) {
+  const n = values.length;
+  const mean = values.reduce((sum, v) => sum + v, 0) / n;
+  const variance = n > 1 ? values.reduce((sum, v) => sum + (v - mean) ** 2, 0) / (n - 1) : null;
+  return { mean, variance };
+}
+
+// Rule of three: after n files without a smell, the 95% upper bound on the
+// share of files with at least one is 3/n
+function ruleOfThree(n) {
+  return Math.min(1, 3 / n);
+}
+
+// Stratified random sample of files (by top-level directory and size bucket)
+// with proportional allocation. Files are drawn one at a time so the caller can
+// stop as soon as the estimates are precise enough or the time budget runs out.
+class StratifiedSampler {
+  constructor(files, rootDir, options = {}) {
+    this.random = createRandom(options.seed !== undefined ? options.seed : Date.now());
+    this.smellTypes = options.smellTypes || [];
+    this.strata = new Map();
+    this.population = files.length;
+
+    for (const file of files) {
+      const relative = path.relative(rootDir, file.path);
+      const topDir = relative.includes(path.sep) ? relative.split(path.sep)[0] : '.';
+      const key = `${topDir}|${sizeBucket(file.size)}`;
+
+      if (!this.strata.has(key)) {
+        this.strata.set(key, { key, files: [], observations: [] });
+      }
+      this.strata.get(key).files.push(file);
+    }
+
+    for (const stratum of this.strata.values()) {
+      this.shuffle(stratum.files);
+      stratum.size = stratum.files.length;
+    }
+  }
+
+  shuffle(items) {
+    for (let i = items.length - 1; i > 0; i--) {
+      const j = Math.floor(this.random() * (i + 1));
+      [items[i], items[j]] = [items[j], items[i]];
+    }
+  }
+
+  get sampled() {
+    let count = 0;
+    for (const stratum of this.strata.values()) count += stratum.observations.length;
+    return count;
+  }
+
+  // Draw from the stratum furthest behind its proportional share
+  next() {
+    let best = null;
+    let bestShare = Infinity;
+
+    for (const stratum of this.strata.values()) {
+      const drawn = stratum.size - stratum.files.length;
+      if (stratum.files.length === 0) continue;
+
+      const share = drawn / stratum.size;
+      if (share < bestShare) {
+        best = stratum;
+        bestShare = share;
+      }
+    }
+
+    if (!best) return null;
+    const file = best.files.pop();
+    return { ...file, stratum: best.key };
+  }
+
+  // A failed analysis still counts as an observation with no smells
+  record(file, result) {
+    const counts = { total: 0, lines: 0 };
+    this.smellTypes.forEach(type => { counts[type] = 0; });
+
+    if (result) {
+      counts.total = result.detected.length;
+      counts.lines = result.summary.linesAnalyzed;
+      for (const smell of result.detected) {
+        counts[smell.type] = (counts[smell.type] || 0) + 1;
+      }
+    }
+
+    this.strata.get(file.stratum).observations.push(counts);
+  }
+
+  // Stratified estimate of the population total of value(observation) and its
+  // variance, with finite population correction. unseenZero counts the files
+  // not yet drawn from strata whose sampled files all had a zero value (and
+  // those of unreached strata, when every observation is zero);
+  // possiblyNonZero is the rule-of-three bound on how many of them are not zero.
+  stratifiedTotal(value) {
+    const sampledStrata = [...this.strata.values()].filter(s => s.observations.length > 0);
+    if (sampledStrata.length === 0) return null;
+
+    // Strata observed only once borrow the pooled variance of all observations
+    const pooledValues = sampledStrata.flatMap(s => s.observations.map(value));
+    const pooled = moments(pooledValues);
+    let total = 0;
+    let variance = 0;
+    let coveredFiles = 0;
+    let unseenZero = 0;
+    let possiblyNonZero = 0;
+
+    for (const stratum of sampledStrata) {
+      const values = stratum.observations.map(value);
+      const { mean, variance: stratumVariance } = moments(values);
+      const n = values.length;
+      const N = stratum.size;
+      const s2 = stratumVariance !== null ? stratumVariance : (pooled.variance || 0);
+
+      total += N * mean;
+      variance += N * N * (1 - n / N) * s2 / n;
+      coveredFiles += N;
+      if (values.every(v => v === 0)) {
+        unseenZero += N - n;
+        possiblyNonZero += (N - n) * ruleOfThree(n);
+      }
+    }
+
+    // Strata not reached yet are extrapolated from the overall mean
+    const uncovered = this.population - coveredFiles;
+    if (uncovered > 0) {
+      total += uncovered * pooled.mean;
+      variance += uncovered * uncovered * (pooled.variance || 0) / this.sampled;
+      if (pooledValues.every(v => v === 0)) {
+        unseenZero += uncovered;
+        possiblyNonZero += uncovered * ruleOfThree(this.sampled);
+      }
+    }
+
+    return { total, variance, unseenZero, possiblyNonZero };
+  }
+
+  // Estimate of the population total of one per-file count, with a
+  // normal-approximation 95% interval. All-zero strata have no variance, so
+  // that interval says nothing about them; filesPossiblyAffected is a separate
+  // bound on the files there: by the rule of three, after n files without a
+  // smell at most 3/n of the rest (95% upper limit) have at least one. It
+  // bounds files, not smells, and is not part of low/high.
+  estimateTotal(metric) {
+    const estimate = this.stratifiedTotal(o => o[metric] || 0);
+    if (estimate === null) return null;
+
+    const { total, variance, unseenZero, possiblyNonZero } = estimate;
+    const halfWidth = Z_95 * Math.sqrt(variance);
+
+    return {
+      estimate: total,
+      low: Math.max(0, total - halfWidth),
+      high: total + halfWidth,
+      perFile: total / this.population,
+      perFileLow: Math.max(0, total - halfWidth) / this.population,
+      perFileHigh: (total + halfWidth) / this.population,
+      filesPossiblyAffected: possiblyNonZero,
+      // Without any smell found a relative precision is never reached; only a
+      // complete enumeration makes a zero estimate exact
+      relativeError: total > 0 ? halfWidth / total : (halfWidth === 0 && unseenZero === 0 ? 0 : Infinity)
+    };
+  }
+
+  // Smells per 1000 lines as a ratio of two estimated totals. Its 95% interval
+  // comes from the delta method: the variance of the ratio is that of the
+  // total of (smells - ratio * lines) per file, divided by the total lines squared.
+  estimatePerKLOC() {
+    const smells = this.stratifiedTotal(o => o.total);
+    const lines = this.stratifiedTotal(o => o.lines);
+    if (smells === null || lines.total <= 0) return null;
+
+    const ratio = smells.total / lines.total;
+    const residual = this.stratifiedTotal(o => o.total - ratio * o.lines);
+    const halfWidth = Z_95 * Math.sqrt(residual.variance) / lines.total;
+
+    return {
+      estimate: ratio * 1000,
+      low: Math.max(0, ratio - halfWidth) * 1000,
+      high: (ratio + halfWidth) * 1000
+    };
+  }
+
+  isPrecise(targetRelativeError) {
+    if (this.sampled < Math.min(MIN_SAMPLES, this.population)) return false;
+    const total = this.estimateTotal('total');
+    return total !== null && total.relativeError <= targetRelativeError;
+  }
+
+  report() {
+    const total = this.estimateTotal('total');
+    const byType = {};
+    for (const type of this.smellTypes) {
+      byType[type] = this.estimateTotal(type);
+    }
+
+    return {
+      population: this.population,
+      sampled: this.sampled,
+      strata: this.strata.size,
+      confidence: 0.95,
+      total,
+      smellsPerKLOC: this.estimatePerKLOC(),
+      byType
+    };
+  }
+}
+
+module.exports = { StratifiedSampler, createRandom };
@@ -0,0 +1,391 @@
+// Threshold filtering and severity for the raw per-entity metrics the analyzers
+// measure (see each analyzer's measure()). Metrics do not depend on thresholds,
+// so a client holding them can re-apply new thresholds without the source.
+// The web UI loads this file as a plain script (served at /smell-rules.js),
+// so it must not require() anything or touch Node APIs.
+const SmellRules = (() => {
+  const SEVERITY_LEVELS = ['low', 'medium', 'high'];
+
+  const DEFAULT_THRESHOLDS = {
+    LongMethod: 40,
+    LongMethodCyclomatic: 10,
+    LongMethodCognitive: 15,
+    LargeParameterList: 5,
+    GodClassMethods: 10,
+    GodClassFields: 15,
+    GodClassLCOM4: 3,
+    DuplicatedCodeSimilarity: 0.8,
+    FeatureEnvyThreshold: 3
+  };
+
+  // Classes smaller than this are not judged by cohesion alone
+  const MIN_COHESION_METHODS = 4;
+  // Tight class cohesion at or above which a large class counts as cohesive
+  const COHESIVE_TCC = 0.5;
+
+  // Missing or zero thresholds fall back to the defaults, as the analyzers always have
+  function resolveThresholds(thresholds = {}) {
+    const resolved = {};
+    for (const [name, value] of Object.entries(DEFAULT_THRESHOLDS)) {
+      resolved[name] = thresholds[name] || value;
+    }
+    return resolved;
+  }
+
+  // Thresholds from the web UI's threshold_* form fields; defaults fill the rest
+  function thresholdsFromSettings(settings, defaults = DEFAULT_THRESHOLDS) {
+    return {
+      LongMethod: parseInt(settings.threshold_longMethod) || defaults.LongMethod,
+      LongMethodCyclomatic: defaults.LongMethodCyclomatic,
+      LongMethodCognitive: defaults.LongMethodCognitive,
+      LargeParameterList: parseInt(settings.threshold_largeParameterList) || defaults.LargeParameterList,
+      GodClassMethods: parseInt(settings.threshold_godClass) || defaults.GodClassMethods,
+      GodClassFields: parseInt(settings.threshold_godClass) || defaults.GodClassFields,
+      GodClassLCOM4: defaults.GodClassLCOM4,
+      DuplicatedCodeSimilarity: parseFloat(settings.threshold_duplicatedCode) || defaults.DuplicatedCodeSimilarity,
+      FeatureEnvyThreshold: parseInt(settings.threshold_featureEnvy) || defaults.FeatureEnvyThreshold
+    };
+  }
+
+  function severityForRatio(ratio) {
+    if (ratio > 2) {
+      return 'high';
+    } else if (ratio > 1.5) {
+      return 'medium';
+    } else {
+      return 'low';
+    }
+  }
+
+  function maxSeverity(a, b) {
+    if (a === null) return b;
+    return SEVERITY_LEVELS.indexOf(a) >= SEVERITY_LEVELS.indexOf(b) ? a : b;
+  }
+
+  // func: { name, startLine, endLine, lineCount, cyclomaticComplexity?, cognitiveComplexity?, maxNesting? }
+  function longMethod(func, t, admit = null) {
+    const lineCount = func.lineCount;
+    const violations = [];
+    let severity = null;
+    let magnitude = 0;
+
+    if (lineCount > t.LongMethod) {
+      violations.push(`${lineCount} lines (threshold: ${t.LongMethod})`);
+      severity = severityForRatio(lineCount / t.LongMethod);
+      magnitude = lineCount / t.LongMethod;
+    }
+
+    for (const [label, value, threshold] of [
+      ['cyclomatic complexity', func.cyclomaticComplexity, t.LongMethodCyclomatic],
+      ['cognitive complexity', func.cognitiveComplexity, t.LongMethodCognitive]
+    ]) {
+      if (value === undefined || value <= threshold) continue;
+
+      violations.push(`${label} ${value} (threshold: ${threshold})`);
+      severity = maxSeverity(severity, severityForRatio(value / threshold));
+      magnitude = Math.max(magnitude, value / threshold);
+    }
+
+    if (violations.length === 0) return null;
+    if (admit && !admit(severity, magnitude)) return null;
+
+    const lengthOnly = violations.length === 1 && lineCount > t.LongMethod;
+    let details = `Function has ${lineCount} lines, threshold is ${t.LongMethod}`;
+    if (func.cyclomaticComplexity !== undefined) {
+      details += `; cyclomatic complexity ${func.cyclomaticComplexity}, cognitive complexity ${func.cognitiveComplexity}, nesting depth ${func.maxNesting}`;
+    }
+
+    return {
+      type: 'LongMethod',
+      lines: `${func.startLine}-${func.endLine}`,
+      description: lengthOnly
+        ? `Method '${func.name}()' exceeds ${t.LongMethod} lines (${lineCount} lines).`
+        : `Method '${func.name}()' is too long or complex: ${violations.join(', ')}.`,
+      details: details,
+      severity: severity,
+      magnitude: magnitude,
+      methodName: func.name,
+      actualLines: lineCount,
+      threshold: t.LongMethod,
+      cyclomaticComplexity: func.cyclomaticComplexity,
+      cognitiveComplexity: func.cognitiveComplexity,
+      maxNesting: func.maxNesting
+    };
+  }
+
+  function parameterListSeverity(paramCount, threshold) {
+    if (paramCount > threshold * 2) {
+      return 'high';
+    } else if (paramCount > threshold * 1.5) {
+      return 'medium';
+    } else {
+      return 'low';
+    }
+  }
+
+  // func: { name, startLine, parameters }
+  function largeParameterList(func, t, admit = null) {
+    const paramCount = func.parameters.length;
+    if (paramCount <= t.LargeParameterList) return null;
+
+    const severity = parameterListSeverity(paramCount, t.LargeParameterList);
+    const magnitude = paramCount / t.LargeParameterList;
+    if (admit && !admit(severity, magnitude)) return null;
+
+    return {
+      type: 'LargeParameterList',
+      lines: `${func.startLine}`,
+      description: `Function '${func.name}()' has ${paramCount} parameters (threshold: ${t.LargeParameterList}).`,
+      details: `Parameters: ${func.parameters.join(', ')}`,
+      severity: severity,
+      magnitude: magnitude,
+      functionName: func.name,
+      parameterCount: paramCount,
+      parameters: func.parameters,
+      threshold: t.LargeParameterList
+    };
+  }
+
+  function godClassSeverity(methodCount, fieldCount, t) {
+    const maxRatio = Math.max(methodCount / t.GodClassMethods, fieldCount / t.GodClassFields);
+
+    if (maxRatio >= 2) {
+      return 'high';
+    } else if (maxRatio > 1.5) {
+      return 'medium';
+    } else {
+      return 'low';
+    }
+  }
+
+  // cls: { name, startLine, endLine, methodCount, fieldCount, cohesion: { lcom4, tcc, components } | null }
+  function godClass(cls, t, admit = null) {
+    const { methodCount, fieldCount, cohesion } = cls;
+    const violations = [];
+
+    if (methodCount > t.GodClassMethods) {
+      violations.push(`${methodCount} methods (threshold: ${t.GodClassMethods})`);
+    }
+
+    if (fieldCount > t.GodClassFields) {
+      violations.push(`${fieldCount} fields (threshold: ${t.GodClassFields})`);
+    }
+
+    const sizeViolation = violations.length > 0;
+    const incohesive = cohesion !== null && cohesion.lcom4 >= t.GodClassLCOM4 &&
+      methodCount >= MIN_COHESION_METHODS;
+
+    if (incohesive) {
+      violations.push(`${cohesion.lcom4} unrelated method groups (LCOM4 threshold: ${t.GodClassLCOM4})`);
+    }
+
+    if (violations.length === 0) return null;
+
+    let severity;
+    let magnitude;
+
+    if (sizeViolation) {
+      severity = godClassSeverity(methodCount, fieldCount, t);
+      magnitude = Math.max(methodCount / t.GodClassMethods, fieldCount / t.GodClassFields);
+      // A large class whose methods mostly work on the same state is less of a blob
+      if (cohesion !== null && cohesion.lcom4 === 1 && cohesion.tcc >= COHESIVE_TCC) {
+        severity = SEVERITY_LEVELS[Math.max(0, SEVERITY_LEVELS.indexOf(severity) - 1)];
+      }
+    } else {
+      magnitude = cohesion.lcom4 / t.GodClassLCOM4;
+      severity = magnitude >= 2 ? 'medium' : 'low';
+    }
+    if (admit && !admit(severity, magnitude)) return null;
+
+    let details = `Class complexity: ${methodCount} methods, ${fieldCount} fields`;
+    if (cohesion !== null) {
+      details += `; cohesion: LCOM4 = ${cohesion.lcom4}` +
+        (cohesion.tcc !== null ? `, TCC = ${cohesion.tcc.toFixed(2)}` : '');
+    }
+
+    return {
+      type: 'GodClass',
+      lines: `${cls.startLine}-${cls.endLine}`,
+      description: `Class '${cls.name}' has too many responsibilities: ${violations.join(', ')}.`,
+      details: details,
+      severity: severity,
+      magnitude: magnitude,
+      className: cls.name,
+      methodCount: methodCount,
+      fieldCount: fieldCount,
+      methodThreshold: t.GodClassMethods,
+      fieldThreshold: t.GodClassFields,
+      lcom4: cohesion ? cohesion.lcom4 : null,
+      tcc: cohesion ? cohesion.tcc : null,
+      methodGroups: cohesion && cohesion.lcom4 > 1 ? cohesion.components : null
+    };
+  }
+
+  function featureEnvySeverity(externalRefs, ownRefs) {
+    const ratio = externalRefs / Math.max(ownRefs, 1);
+
+    if (ratio > 5) {
+      return 'high';
+    } else if (ratio > 2) {
+      return 'medium';
+    } else {
+      return 'low';
+    }
+  }
+
+  // method: { methodName, className, startLine, endLine, ownReferences, externalReferences: { class: count } }
+  function featureEnvy(method, t, admit = null) {
+    const smells = [];
+    const ownReferences = method.ownReferences;
+
+    for (const [externalClass, refCount] of Object.entries(method.externalReferences)) {
+      if (refCount < t.FeatureEnvyThreshold || refCount <= ownReferences) continue;
+
+      const severity = featureEnvySeverity(refCount, ownReferences);
+      // Past both conditions: the threshold and the method's own references
+      const magnitude = refCount / Math.max(t.FeatureEnvyThreshold, ownReferences);
+      if (admit && !admit(severity, magnitude)) continue;
+
+      smells.push({
+        type: 'FeatureEnvy',
+        lines: `${method.startLine}-${method.endLine}`,
+        description: `Method '${method.methodName}()' in class '${method.className}' uses ${refCount} features from '${externalClass}' but only ${ownReferences} from its own class.`,
+        details: `Method shows feature envy towards external class`,
+        severity: severity,
+        magnitude: magnitude,
+        methodName: method.methodName,
+        className: method.className,
+        enviedClass: externalClass,
+        externalReferences: refCount,
+        ownReferences: ownReferences,
+        threshold: t.FeatureEnvyThreshold
+      });
+    }
+
+    return smells;
+  }
+
+  function duplicationSeverity(similarity) {
+    if (similarity > 0.95) {
+      return 'high';
+    } else if (similarity > 0.9) {
+      return 'medium';
+    } else {
+      return 'low';
+    }
+  }
+
+  // pair: { first, second, similarity }, each function as { name, startLine, endLine }
+  function duplicatedFunctions(pair, t, admit = null) {
+    const { first, second, similarity } = pair;
+    if (similarity < t.DuplicatedCodeSimilarity) return null;
+
+    const severity = duplicationSeverity(similarity);
+    const magnitude = similarity / t.DuplicatedCodeSimilarity;
+    if (admit && !admit(severity, magnitude)) return null;
+
+    return {
+      type: 'DuplicatedCode',
+      lines: `${first.startLine}-${first.endLine}, ${second.startLine}-${second.endLine}`,
+      description: `Functions '${first.name}()' and '${second.name}()' have ${Math.round(similarity * 100)}% similarity.`,
+      details: `Code duplication detected between two functions`,
+      severity: severity,
+      magnitude: magnitude,
+      function1: first.name,
+      function2: second.name,
+      similarity: similarity,
+      threshold: t.DuplicatedCodeSimilarity
+    };
+  }
+
+  // pair: { i, j, similarity } for the blockSize-line windows starting at lines i + 1 and j + 1
+  function duplicatedBlocks(pair, blockSize, t, admit = null) {
+    const { i, j, similarity } = pair;
+    if (similarity < t.DuplicatedCodeSimilarity) return null;
+
+    const severity = duplicationSeverity(similarity);
+    const magnitude = similarity / t.DuplicatedCodeSimilarity;
+    if (admit && !admit(severity, magnitude)) return null;
+
+    return {
+      type: 'DuplicatedCode',
+      lines: `${i + 1}-${i + blockSize}, ${j + 1}-${j + blockSize}`,
+      description: `Code blocks have ${Math.round(similarity * 100)}% similarity.`,
+      details: `Duplicated code blocks detected`,
+      severity: severity,
+      magnitude: magnitude,
+      similarity: similarity,
+      blockSize: blockSize,
+      threshold: t.DuplicatedCodeSimilarity
+    };
+  }
+
+  // metrics: { floor, blockSize, functions: [pair], blocks: [pair] }, with every
+  // pair scoring at least floor, blocks ordered by i then j. Thresholds below
+  // floor only find what was recorded.
+  function duplicatedCode(metrics, t, admit = null) {
+    const smells = [];
+
+    for (const pair of metrics.functions) {
+      const smell = duplicatedFunctions(pair, t, admit);
+      if (smell) smells.push(smell);
+    }
+
+    // A match hides the blocks overlapping its second window in the same row
+    let row = -1;
+    let nextJ = 0;
+    for (const pair of metrics.blocks) {
+      if (pair.i !== row) {
+        row = pair.i;
+        nextJ = 0;
+      }
+      if (pair.j < nextJ) continue;
+
+      const smell = duplicatedBlocks(pair, metrics.blockSize, t, admit);
+      if (smell) {
+        smells.push(smell);
+        nextJ = pair.j + metrics.blockSize;
+      }
+    }
+
+    return smells;
+  }
+
+  const EVALUATORS = {
+    LongMethod: (metrics, t, admit) => metrics.map(func => longMethod(func, t, admit)).filter(Boolean),
+    LargeParameterList: (metrics, t, admit) => metrics.map(func => largeParameterList(func, t, admit)).filter(Boolean),
+    GodClass: (metrics, t, admit) => metrics.map(cls => godClass(cls, t, admit)).filter(Boolean),
+    FeatureEnvy: (metrics, t, admit) => [].concat(...metrics.map(method => featureEnvy(method, t, admit))),
+    DuplicatedCode: duplicatedCode,
+    // Every magic number is reported; its metrics are already the smells
+    MagicNumbers: (metrics) => metrics
+  };
+
+  // The smells one analyzer reports for the given metrics and thresholds
+  function evaluate(smellType, metrics, thresholds, admit = null) {
+    return EVALUATORS[smellType](metrics, resolveThresholds(thresholds), admit);
+  }
+
+  return {
+    DEFAULT_THRESHOLDS,
+    resolveThresholds,
+    thresholdsFromSettings,
+    severityForRatio,
+    maxSeverity,
+    parameterListSeverity,
+    godClassSeverity,
+    featureEnvySeverity,
+    duplicationSeverity,
+    longMethod,
+    largeParameterList,
+    godClass,
+    featureEnvy,
+    duplicatedFunctions,
+    duplicatedBlocks,
+    evaluate
+  };
+})();
+
+if (typeof module !== 'undefined' && module.exports) {
+  module.exports = SmellRules;
+}
@@ -0,0 +1,180 @@
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const crypto = require('crypto');
+const { Worker } = require('worker_threads');
+const { privateTempDir, writeFileAtomic } = require('./privateDir');
+
+const INDEX_VERSION = 2;
+const READ_CONCURRENCY = 32;
+// Below this many changed files a worker pool costs more than it saves
+const MIN_FILES_PER_WORKER = 50;
+
+let extractor = null;
+
+// Class symbols of one source file: name, fields, methods and declared field types
+function extractSymbols(content, fileExtension) {
+  if (!extractor) {
+    const CodeSmellDetector = require('./detector');
+    extractor = new CodeSmellDetector({ smells: {}, thresholds: {} });
+  }
+
+  return extractor.extractClasses(content, fileExtension).map(cls => ({
+    name: cls.name,
+    fields: cls.fields,
+    methods: cls.methods,
+    fieldTypes: cls.fieldTypes
+  }));
+}
+
+function hashContent(content) {
+  return crypto.createHash('sha1').update(content).digest('hex');
+}
+
+// Default cache of a project's index, in the per-user cache directory rather
+// than the analyzed tree; null when that directory is unusable
+function cacheFileFor(rootDir) {
+  const cacheDir = privateTempDir();
+  if (!cacheDir) return null;
+
+  return path.join(cacheDir, `index-${hashContent(path.resolve(rootDir))}.json`);
+}
+
+// Project-wide class index used to resolve the types FeatureEnvy sees in
+// member accesses. Entries are cached per file and invalidated by content hash.
+class SymbolIndex {
+  constructor(rootDir, cacheFile = null) {
+    this.rootDir = rootDir;
+    this.cacheFile = cacheFile;
+    this.files = {};
+    this.classes = new Map();
+  }
+
+  async build(filePaths) {
+    const cached = this.loadCache();
+    const stale = [];
+    const files = {};
+
+    await mapWithConcurrency(filePaths, READ_CONCURRENCY, async (filePath) => {
+      const key = path.relative(this.rootDir, filePath);
+      const content = await fs.promises.readFile(filePath, 'utf8');
+      const hash = hashContent(content);
+
+      if (cached[key] && cached[key].hash === hash) {
+        files[key] = cached[key];
+      } else {
+        files[key] = { hash, classes: null };
+        stale.push({ key, content, extension: path.extname(filePath) });
+      }
+    });
+
+    const parsed = await this.parseFiles(stale);
+    stale.forEach((file, i) => {
+      files[file.key].classes = parsed[i];
+    });
+
+    this.files = files;
+    this.indexClasses();
+    this.saveCache();
+
+    return { files: filePaths.length, reparsed: stale.length };
+  }
+
+  async parseFiles(stale) {
+    const workerCount = Math.min(
+      os.availableParallelism ? os.availableParallelism() : os.cpus().length,
+      Math.floor(stale.length / MIN_FILES_PER_WORKER)
+    );
+
+    if (workerCount < 2) {
+      return stale.map(file => extractSymbols(file.content, file.extension));
+    }
+
+    // Contiguous chunks keep the results in input order
+    const chunkSize = Math.ceil(stale.length / workerCount);
+    const chunks = [];
+    for (let i = 0; i < stale.length; i += chunkSize) {
+      chunks.push(stale.slice(i, i + chunkSize));
+    }
+
+    // A chunk whose worker fails or exits without replying is parsed on this thread
+    const results = await Promise.all(chunks.map(chunk => new Promise((resolve, reject) => {
+      const worker = new Worker(path.join(__dirname, 'symbolIndexWorker.js'), {
+        workerData: chunk.map(({ content, extension }) => ({ content, extension }))
+      });
+      worker.once('message', resolve);
+      worker.once('error', reject);
+      worker.once('exit', code => reject(new Error(`worker exited with code ${code}`)));
+    }).catch(error => {
+      console.warn(`Warning: Symbol index worker failed, parsing on main thread: ${error.message}`);
+      return chunk.map(file => extractSymbols(file.content, file.extension));
+    })));
+
+    return results.flat();
+  }
+
+  indexClasses() {
+    this.classes = new Map();
+    // Sorted keys make the winner of a duplicate class name deterministic
+    for (const key of Object.keys(this.files).sort()) {
+      for (const cls of this.files[key].classes) {
+        if (!this.classes.has(cls.name)) {
+          this.classes.set(cls.name, { ...cls, file: key });
+        }
+      }
+    }
+  }
+
+  hasClass(className) {
+    return this.classes.has(className);
+  }
+
+  getClass(className) {
+    return this.classes.get(className) || null;
+  }
+
+  fieldType(className, fieldName) {
+    const cls = this.classes.get(className);
+    return cls && cls.fieldTypes[fieldName] ? cls.fieldTypes[fieldName] : null;
+  }
+
+  loadCache() {
+    if (!this.cacheFile || !fs.existsSync(this.cacheFile)) {
+      return {};
+    }
+
+    try {
+      const cache = JSON.parse(fs.readFileSync(this.cacheFile, 'utf8'));
+      return cache.version === INDEX_VERSION ? cache.files : {};
+    } catch (error) {
+      console.warn(`Warning: Ignoring unreadable symbol index ${this.cacheFile}: ${error.message}`);
+      return {};
+    }
+  }
+
+  saveCache() {
+    if (!this.cacheFile) return;
+
+    try {
+      writeFileAtomic(this.cacheFile, JSON.stringify({ version: INDEX_VERSION, files: this.files }));
+    } catch (error) {
+      console.warn(`Warning: Could not save symbol index ${this.cacheFile}: ${error.message}`);
+    }
+  }
+}
+
+async function mapWithConcurrency(items, limit, fn) {
+  let next = 0;
+  const runners = Array.from({ length: Math.min(limit, items.length) }, async () => {
+    while (next < items.length) {
+      const item = items[next++];
+      await fn(item);
+    }
+  });
+  await Promise.all(runners);
+}
+
+SymbolIndex.extractSymbols = extractSymbols;
+SymbolIndex.cacheFileFor = cacheFileFor;
+
+module.exports = SymbolIndex;
@@ -0,0 +1,5 @@
+const { parentPort, workerData } = require('worker_threads');
+const SymbolIndex = require('./symbolIndex');
+
+// Parse a chunk of files and post back their class symbols in the same order
+parentPort.postMessage(workerData.map(file => SymbolIndex.extractSymbols(file.content, file.extension)));
@@ -0,0 +1,156 @@
+// Merging t-digest (Dunning & Ertl): a mergeable quantile sketch whose size is
+// bounded by the compression factor, with the best accuracy at the tails, where
+// percentile thresholds live. Values are buffered and folded into centroids in
+// batches.
+
+const DEFAULT_COMPRESSION = 100;
+const BUFFER_FACTOR = 5;
+
+class TDigest {
+  constructor(compression = DEFAULT_COMPRESSION) {
+    this.compression = compression;
+    this.means = [];
+    this.weights = [];
+    this.buffer = [];
+    this.count = 0;
+    this.min = Infinity;
+    this.max = -Infinity;
+  }
+
+  add(value, weight = 1) {
+    if (!Number.isFinite(value) || weight <= 0) return;
+
+    this.buffer.push({ mean: value, weight });
+    this.count += weight;
+    if (value < this.min) this.min = value;
+    if (value > this.max) this.max = value;
+
+    if (this.buffer.length >= BUFFER_FACTOR * this.compression) {
+      this.compress();
+    }
+  }
+
+  merge(other) {
+    other.compress();
+    for (let i = 0; i < other.means.length; i++) {
+      this.add(other.means[i], other.weights[i]);
+    }
+    // Centroid means lie inside the range, so the extremes have to be carried over
+    if (other.count > 0) {
+      this.min = Math.min(this.min, other.min);
+      this.max = Math.max(this.max, other.max);
+    }
+    return this;
+  }
+
+  // k1 scale function: centroids near q = 0 and q = 1 stay small
+  scale(q) {
+    return (this.compression / (2 * Math.PI)) * Math.asin(2 * q - 1);
+  }
+
+  scaleInverse(k) {
+    return (Math.sin(k * (2 * Math.PI) / this.compression) + 1) / 2;
+  }
+
+  // Cumulative weight the centroid starting after `before` may grow to. Past
+  // k = compression / 4 (q = 1) the sine would turn back down, so the last
+  // centroid simply takes everything that is left
+  limitAfter(before) {
+    const k = this.scale(before / this.count);
+    return k + 1 >= this.compression / 4 ? this.count : this.count * this.scaleInverse(k + 1);
+  }
+
+  compress() {
+    if (this.buffer.length === 0) return;
+
+    const items = this.buffer;
+    for (let i = 0; i < this.means.length; i++) {
+      items.push({ mean: this.means[i], weight: this.weights[i] });
+    }
+    items.sort((a, b) => a.mean - b.mean);
+    this.buffer = [];
+
+    const means = [];
+    const weights = [];
+    let mean = items[0].mean;
+    let weight = items[0].weight;
+    let before = 0;
+    let limit = this.limitAfter(0);
+
+    for (let i = 1; i < items.length; i++) {
+      const item = items[i];
+      if (before + weight + item.weight <= limit) {
+        weight += item.weight;
+        mean += (item.mean - mean) * item.weight / weight;
+      } else {
+        means.push(mean);
+        weights.push(weight);
+        before += weight;
+        limit = this.limitAfter(before);
+        mean = item.mean;
+        weight = item.weight;
+      }
+    }
+    means.push(mean);
+    weights.push(weight);
+
+    this.means = means;
+    this.weights = weights;
+  }
+
+  // Interpolates between centroid centers, and towards min/max past the outer ones
+  quantile(q) {
+    this.compress();
+    if (this.count === 0) return null;
+    if (q <= 0) return this.min;
+    if (q >= 1) return this.max;
+    if (this.means.length === 1) return this.means[0];
+
+    const target = q * this.count;
+    const last = this.means.length - 1;
+
+    if (target < this.weights[0] / 2) {
+      return this.min + (this.means[0] - this.min) * target / (this.weights[0] / 2);
+    }
+
+    let center = this.weights[0] / 2;
+    for (let i = 0; i < last; i++) {
+      const nextCenter = center + (this.weights[i] + this.weights[i + 1]) / 2;
+      if (target <= nextCenter) {
+        const fraction = (target - center) / (nextCenter - center);
+        return this.means[i] + (this.means[i + 1] - this.means[i]) * fraction;
+      }
+      center = nextCenter;
+    }
+
+    const tail = this.count - center;
+    return this.means[last] + (this.max - this.means[last]) * Math.min(1, (target - center) / tail);
+  }
+
+  toJSON() {
+    this.compress();
+    return {
+      compression: this.compression,
+      count: this.count,
+      min: this.count > 0 ? this.min : null,
+      max: this.count > 0 ? this.max : null,
+      centroids: this.means.map((mean, i) => [mean, this.weights[i]])
+    };
+  }
+
+  static fromJSON(data) {
+    const digest = new TDigest(data.compression || DEFAULT_COMPRESSION);
+    for (const [mean, weight] of data.centroids || []) {
+      digest.means.push(mean);
+      digest.weights.push(weight);
+      digest.count += weight;
+    }
+    if (digest.count > 0) {
+      digest.min = data.min;
+      digest.max = data.max;
+    }
+    return digest;
+  }
+}
+
+module.exports = TDigest;
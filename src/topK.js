@@ -0,0 +1,134 @@
+const SEVERITY_RANK = { high: 3, medium: 2, low: 1 };
+
+// Worse smells compare greater: severity first, then how far past the threshold
+// the metric is (smell.magnitude, always metric / threshold so types compare).
+// File path and line break ties so the kept set does not depend on the order
+// files were discovered in.
+function compareSmells(a, b) {
+  const severityDiff = (SEVERITY_RANK[a.severity] || 0) - (SEVERITY_RANK[b.severity] || 0);
+  if (severityDiff !== 0) return severityDiff;
+
+  const magnitudeDiff = (a.magnitude || 0) - (b.magnitude || 0);
+  if (magnitudeDiff !== 0) return magnitudeDiff;
+
+  const fileDiff = (b.filePath || '').localeCompare(a.filePath || '');
+  if (fileDiff !== 0) return fileDiff;
+
+  return parseInt(b.lines, 10) - parseInt(a.lines, 10);
+}
+
+// Binary min-heap holding at most `capacity` smells; the root is the least
+// severe one kept, i.e. the one the next candidate has to beat.
+class BoundedMinHeap {
+  constructor(capacity) {
+    this.capacity = capacity;
+    this.items = [];
+  }
+
+  isFull() {
+    return this.items.length >= this.capacity;
+  }
+
+  min() {
+    return this.items[0];
+  }
+
+  offer(smell) {
+    if (this.capacity <= 0) return false;
+
+    if (!this.isFull()) {
+      this.items.push(smell);
+      this.siftUp(this.items.length - 1);
+      return true;
+    }
+
+    if (compareSmells(smell, this.items[0]) <= 0) return false;
+
+    this.items[0] = smell;
+    this.siftDown(0);
+    return true;
+  }
+
+  siftUp(index) {
+    const items = this.items;
+    while (index > 0) {
+      const parent = (index - 1) >> 1;
+      if (compareSmells(items[index], items[parent]) >= 0) break;
+      [items[index], items[parent]] = [items[parent], items[index]];
+      index = parent;
+    }
+  }
+
+  siftDown(index) {
+    const items = this.items;
+    while (true) {
+      const left = index * 2 + 1;
+      const right = left + 1;
+      let smallest = index;
+      if (left < items.length && compareSmells(items[left], items[smallest]) < 0) smallest = left;
+      if (right < items.length && compareSmells(items[right], items[smallest]) < 0) smallest = right;
+      if (smallest === index) break;
+      [items[index], items[smallest]] = [items[smallest], items[index]];
+      index = smallest;
+    }
+  }
+
+  sorted() {
+    return [...this.items].sort((a, b) => compareSmells(b, a));
+  }
+}
+
+// Keeps only the K worst smells seen so far, overall or per smell type, so a
+// repository-wide run needs O(K) memory no matter how many smells it finds.
+class TopKCollector {
+  constructor(k, perType = false) {
+    this.k = k;
+    this.perType = perType;
+    this.heaps = new Map();
+    this.seen = 0;
+    this.filesAnalyzed = 0;
+    this.filesWithSmells = 0;
+  }
+
+  heapFor(smellType) {
+    const key = this.perType ? smellType : '*';
+    if (!this.heaps.has(key)) {
+      this.heaps.set(key, new BoundedMinHeap(this.k));
+    }
+    return this.heaps.get(key);
+  }
+
+  // Cheap pre-check analyzers run before building a smell's details.
+  // Ties are admitted; offer() settles them with the full ordering.
+  admits(smellType, severity, magnitude) {
+    const heap = this.heapFor(smellType);
+    if (!heap.isFull()) return true;
+
+    const floor = heap.min();
+    const severityDiff = (SEVERITY_RANK[severity] || 0) - (SEVERITY_RANK[floor.severity] || 0);
+    return severityDiff > 0 || (severityDiff === 0 && magnitude >= (floor.magnitude || 0));
+  }
+
+  offer(smell, filePath) {
+    this.seen++;
+    return this.heapFor(smell.type).offer({ ...smell, filePath });
+  }
+
+  offerResult(result) {
+    this.filesAnalyzed++;
+    if (result.detected.length > 0) this.filesWithSmells++;
+    for (const smell of result.detected) {
+      this.offer(smell, result.filePath);
+    }
+  }
+
+  results() {
+    const smells = [];
+    for (const heap of this.heaps.values()) {
+      smells.push(...heap.sorted());
+    }
+    return smells.sort((a, b) => compareSmells(b, a));
+  }
+}
+
+module.exports = { TopKCollector, BoundedMinHeap, compareSmells };
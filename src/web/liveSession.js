@@ -0,0 +1,310 @@
+const Detector = require('../detector');
+
+// Analyzers grouped by the part of the parse model their results depend on
+const FUNCTION_ANALYZERS = ['LongMethod', 'LargeParameterList'];
+const CLASS_ANALYZERS = ['GodClass', 'FeatureEnvy'];
+const LINE_ANALYZERS = ['MagicNumbers'];
+
+// Shift every line number >= fromLine in a smell's "lines" string by delta.
+// The browser applies the same rule, so moved smells never need to be resent.
+function shiftLines(lines, fromLine, delta) {
+  return String(lines).replace(/\d+/g, n => {
+    const line = parseInt(n, 10);
+    return line >= fromLine ? String(line + delta) : n;
+  });
+}
+
+class LiveAnalysisSession {
+  constructor(config, language) {
+    this.detector = new Detector(config);
+    this.analyzers = this.detector.analyzers;
+    this.extension = language === 'python' ? '.py' : '.java';
+    this.filePath = `live${this.extension}`;
+    this.nextId = 1;
+  }
+
+  // Full analysis of a new buffer; every later edit is applied incrementally
+  async open(code) {
+    this.lines = code.split('\n');
+    this.smells = new Map();
+    this.functionSmells = new Map();
+    this.classSmells = new Map();
+    this.lineSmells = this.lines.map(() => []);
+    this.functionDuplicates = [];
+    this.blockDuplicates = [];
+
+    const content = this.content();
+    this.functions = this.detector.extractFunctions(content, this.extension);
+    this.classes = this.detector.extractClasses(content, this.extension);
+
+    const added = [];
+    for (const func of this.functions) {
+      added.push(...await this.analyzeFunction(func));
+    }
+    for (const cls of this.classes) {
+      added.push(...await this.analyzeClass(cls));
+    }
+    added.push(...await this.analyzeLines(0, this.lines.length));
+
+    if (this.analyzers.DuplicatedCode) {
+      this.blocks = this.analyzers.DuplicatedCode.normalizeBlocks(this.lines);
+      added.push(...this.compareFunctions(this.functions, this.functions));
+      added.push(...this.compareBlocks(new Set(this.blocks.keys()), true));
+    }
+
+    return added;
+  }
+
+  // Apply one line-based edit: replace deleteCount lines at 0-based index start
+  // with newLines. Returns the ids of smells that disappeared, the line shift
+  // applied to surviving smells and the newly detected smells.
+  async applyEdit({ start, deleteCount, lines: newLines }) {
+    start = Math.max(0, Math.min(start, this.lines.length));
+    deleteCount = Math.max(0, Math.min(deleteCount, this.lines.length - start));
+    const delta = newLines.length - deleteCount;
+
+    // 1-based range of old lines the edit can influence; one line of context on
+    // each side covers insertions and the dedent line that ends a Python block
+    const editFrom = start;
+    const editTo = start + deleteCount + 1;
+    const touches = (startLine, endLine) => startLine <= editTo && endLine + 1 >= editFrom;
+    const shiftFrom = start + deleteCount + 1;
+
+    const removed = [];
+    const dropSmells = (ids) => {
+      for (const id of ids) {
+        if (this.smells.delete(id)) removed.push(id);
+      }
+    };
+
+    // Functions and classes overlapping the edit are re-extracted, the rest are shifted
+    const staleFunctions = this.functions.filter(f => touches(f.startLine, f.endLine));
+    const staleClasses = this.classes.filter(c => touches(c.startLine, c.endLine));
+    const staleFunctionSet = new Set(staleFunctions);
+
+    for (const func of staleFunctions) {
+      dropSmells(this.functionSmells.get(func) || []);
+      this.functionSmells.delete(func);
+    }
+    for (const cls of staleClasses) {
+      dropSmells(this.classSmells.get(cls) || []);
+      this.classSmells.delete(cls);
+    }
+    for (const ids of this.lineSmells.slice(start, start + deleteCount)) {
+      dropSmells(ids);
+    }
+
+    this.functionDuplicates = this.functionDuplicates.filter(dup => {
+      const stale = staleFunctionSet.has(dup.func1) || staleFunctionSet.has(dup.func2);
+      if (stale) dropSmells([dup.id]);
+      return !stale;
+    });
+
+    const blockSize = this.analyzers.DuplicatedCode ? this.analyzers.DuplicatedCode.minLineCount : 0;
+    const firstStaleBlock = start - blockSize + 1;
+    const lastStaleBlock = start + deleteCount - 1;
+    this.blockDuplicates = this.blockDuplicates.filter(dup => {
+      const stale = [dup.i, dup.j].some(b => b >= firstStaleBlock && b <= lastStaleBlock);
+      if (stale) {
+        dropSmells([dup.id]);
+      } else {
+        if (dup.i > lastStaleBlock) dup.i += delta;
+        if (dup.j > lastStaleBlock) dup.j += delta;
+      }
+      return !stale;
+    });
+
+    // Apply the text change and shift everything below it
+    this.lines.splice(start, deleteCount, ...newLines);
+    this.lineSmells.splice(start, deleteCount, ...newLines.map(() => []));
+
+    if (delta !== 0) {
+      for (const entity of [...this.functions, ...this.classes]) {
+        if (entity.startLine >= shiftFrom) {
+          entity.startLine += delta;
+          entity.endLine += delta;
+        }
+      }
+      for (const smell of this.smells.values()) {
+        smell.lines = shiftLines(smell.lines, shiftFrom, delta);
+      }
+    }
+
+    // Only the edited lines, their neighbours and the starts of stale entities
+    // above the edit can begin a new definition; no surviving entity starts there
+    const rescanStarts = (stale) => {
+      const indices = new Set();
+      const last = Math.min(this.lines.length - 1, start + newLines.length);
+      for (let i = Math.max(0, start - 1); i <= last; i++) indices.add(i);
+      for (const entity of stale) {
+        if (entity.startLine - 1 < start - 1) indices.add(entity.startLine - 1);
+      }
+      return [...indices].sort((a, b) => a - b);
+    };
+
+    const content = this.content();
+    const freshFunctions = this.detector.extractFunctions(content, this.extension, rescanStarts(staleFunctions));
+    const freshClasses = this.detector.extractClasses(content, this.extension, rescanStarts(staleClasses));
+
+    const staleClassSet = new Set(staleClasses);
+    this.functions = this.functions.filter(f => !staleFunctionSet.has(f)).concat(freshFunctions)
+      .sort((a, b) => a.startLine - b.startLine);
+    this.classes = this.classes.filter(c => !staleClassSet.has(c)).concat(freshClasses)
+      .sort((a, b) => a.startLine - b.startLine);
+
+    // Re-run only the analyzers whose inputs changed
+    const added = [];
+    for (const func of freshFunctions) {
+      added.push(...await this.analyzeFunction(func));
+    }
+    for (const cls of freshClasses) {
+      added.push(...await this.analyzeClass(cls));
+    }
+    added.push(...await this.analyzeLines(start, start + newLines.length));
+
+    if (this.analyzers.DuplicatedCode) {
+      const analyzer = this.analyzers.DuplicatedCode;
+      const firstBlock = Math.max(0, start - blockSize + 1);
+      const editedBlocks = analyzer.normalizeBlocks(this.lines.slice(firstBlock, start + newLines.length + blockSize - 1));
+      const blockCount = Math.max(0, this.lines.length - blockSize + 1);
+      const keptAfter = this.blocks.slice(Math.max(firstBlock, start + deleteCount));
+      this.blocks = this.blocks.slice(0, firstBlock).concat(editedBlocks, keptAfter).slice(0, blockCount);
+
+      const touchedBlocks = new Set();
+      for (let b = firstBlock; b < firstBlock + editedBlocks.length && b < blockCount; b++) {
+        touchedBlocks.add(b);
+      }
+
+      added.push(...this.compareFunctions(freshFunctions, this.functions));
+      added.push(...this.compareBlocks(touchedBlocks));
+    }
+
+    return { removed, shift: { fromLine: shiftFrom, delta }, added };
+  }
+
+  content() {
+    return this.lines.join('\n');
+  }
+
+  parseResultFor(overrides) {
+    return {
+      content: '',
+      lines: this.lines,
+      language: this.extension === '.py' ? 'python' : 'java',
+      functions: this.functions,
+      classes: this.classes,
+      imports: [],
+      variables: [],
+      ...overrides
+    };
+  }
+
+  async runAnalyzers(smellTypes, parseResult) {
+    const smells = [];
+    for (const smellType of smellTypes) {
+      const analyzer = this.analyzers[smellType];
+      if (!analyzer) continue;
+      try {
+        smells.push(...await analyzer.analyze(parseResult, parseResult.content, this.filePath));
+      } catch (error) {
+        console.warn(`Warning: ${smellType} analyzer failed:`, error.message);
+      }
+    }
+    return smells;
+  }
+
+  register(smell) {
+    smell.id = this.nextId++;
+    this.smells.set(smell.id, smell);
+    return smell;
+  }
+
+  async analyzeFunction(func) {
+    const smells = await this.runAnalyzers(FUNCTION_ANALYZERS, this.parseResultFor({ functions: [func] }));
+    smells.forEach(smell => this.register(smell));
+    this.functionSmells.set(func, smells.map(smell => smell.id));
+    return smells;
+  }
+
+  async analyzeClass(cls) {
+    const smells = await this.runAnalyzers(CLASS_ANALYZERS, this.parseResultFor({ classes: [cls], content: cls.content }));
+    smells.forEach(smell => this.register(smell));
+    this.classSmells.set(cls, smells.map(smell => smell.id));
+    return smells;
+  }
+
+  // Line analyzers see only the edited slice; their line numbers are rebased afterwards
+  async analyzeLines(from, to) {
+    const smells = await this.runAnalyzers(LINE_ANALYZERS, this.parseResultFor({ lines: this.lines.slice(from, to) }));
+    for (const smell of smells) {
+      smell.lines = shiftLines(smell.lines, 1, from);
+      this.register(smell);
+      this.lineSmells[parseInt(smell.lines, 10) - 1].push(smell.id);
+    }
+    return smells;
+  }
+
+  compareFunctions(candidates, all) {
+    const analyzer = this.analyzers.DuplicatedCode;
+    const candidateSet = new Set(candidates);
+    const order = new Map(all.map((func, index) => [func, index]));
+    const smells = [];
+
+    for (const func1 of candidates) {
+      for (const func2 of all) {
+        // Each pair once, in source order like the full analysis
+        if (func1 === func2) continue;
+        if (candidateSet.has(func2) && order.get(func2) < order.get(func1)) continue;
+
+        const [first, second] = func1.startLine <= func2.startLine ? [func1, func2] : [func2, func1];
+        const smell = analyzer.compareFunctions(first, second);
+        if (smell) {
+          this.register(smell);
+          this.functionDuplicates.push({ id: smell.id, func1: first, func2: second });
+          smells.push(smell);
+        }
+      }
+    }
+
+    return smells;
+  }
+
+  // Blocks scanned forward from a touched window use the same skip-ahead as
+  // findDuplicatedBlocks; untouched windows are only paired with touched ones
+  // further down, so the result matches the full analysis except for overlaps
+  // the full scan would have skipped from an earlier window.
+  compareBlocks(touched, initial = false) {
+    const analyzer = this.analyzers.DuplicatedCode;
+    const blockSize = analyzer.minLineCount;
+    const smells = [];
+    const record = (i, j) => {
+      const smell = analyzer.compareBlocks(this.blocks, i, j);
+      if (smell) {
+        this.register(smell);
+        this.blockDuplicates.push({ id: smell.id, i, j });
+        smells.push(smell);
+      }
+      return smell;
+    };
+
+    for (let i = 0; i < this.blocks.length; i++) {
+      if (this.blocks[i] === null) continue;
+
+      if (touched.has(i)) {
+        for (let j = i + blockSize; j < this.blocks.length; j++) {
+          if (record(i, j)) j += blockSize - 1;
+        }
+      } else if (!initial) {
+        for (const j of touched) {
+          if (j >= i + blockSize) record(i, j);
+        }
+      }
+    }
+
+    return smells;
+  }
+}
+
+LiveAnalysisSession.shiftLines = shiftLines;
+
+module.exports = LiveAnalysisSession;
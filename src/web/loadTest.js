@@ -0,0 +1,409 @@
+#!/usr/bin/env node
+
+// Load generator for the web server: replays a mix of /api/analyze-file and
+// /api/analyze-code requests built from samples/ and test-programs/, reports
+// throughput and latency percentiles, and exits non-zero when an SLO is missed.
+//
+// Concurrency mode is closed-loop: a slow response delays the next request, so
+// a stalled server is sent less load and its queueing never shows up in the
+// percentiles (coordinated omission). Rate mode is open-loop: requests go out
+// on a fixed schedule and latency is measured from each scheduled send time.
+
+const http = require('http');
+const net = require('net');
+const fs = require('fs');
+const path = require('path');
+const { spawn } = require('child_process');
+
+const ROOT_DIR = path.join(__dirname, '..', '..');
+const SOURCE_DIRS = ['samples', 'test-programs'];
+const DETECTORS = ['longMethod', 'godClass', 'duplicatedCode', 'largeParameterList', 'magicNumbers', 'featureEnvy'];
+const PERCENTILES = [50, 90, 95, 99];
+const STARTUP_TIMEOUT_MS = 15000;
+
+function collectSources(dirs) {
+  const sources = [];
+
+  const walk = dir => {
+    for (const entry of fs.readdirSync(dir, { withFileTypes: true })) {
+      const fullPath = path.join(dir, entry.name);
+      if (entry.isDirectory()) {
+        if (entry.name !== '__pycache__') walk(fullPath);
+      } else if (['.py', '.java'].includes(path.extname(entry.name))) {
+        sources.push({
+          name: entry.name,
+          language: path.extname(entry.name) === '.py' ? 'python' : 'java',
+          code: fs.readFileSync(fullPath, 'utf8')
+        });
+      }
+    }
+  };
+
+  dirs.filter(dir => fs.existsSync(dir)).forEach(walk);
+  return sources;
+}
+
+// Each source at each size multiplier; a payload of scale k is the file repeated k times
+function buildPayloads(sources, scales) {
+  const payloads = [];
+  for (const source of sources) {
+    for (const scale of scales) {
+      payloads.push({
+        name: scale === 1 ? source.name : `${scale}x ${source.name}`,
+        filename: source.name,
+        language: source.language,
+        code: Array(scale).fill(source.code).join('\n')
+      });
+    }
+  }
+  return payloads;
+}
+
+function multipartBody(payload, boundary) {
+  const parts = DETECTORS.map(detector =>
+    `--${boundary}\r\nContent-Disposition: form-data; name="detectors[]"\r\n\r\n${detector}\r\n`);
+  parts.push(`--${boundary}\r\nContent-Disposition: form-data; name="codeFile"; filename="${payload.filename}"\r\n` +
+    `Content-Type: text/plain\r\n\r\n${payload.code}\r\n--${boundary}--\r\n`);
+  return Buffer.from(parts.join(''));
+}
+
+function buildRequest(endpoint, payload) {
+  if (endpoint === '/api/analyze-file') {
+    const boundary = `----loadtest${Math.random().toString(16).slice(2)}`;
+    return { body: multipartBody(payload, boundary), contentType: `multipart/form-data; boundary=${boundary}` };
+  }
+
+  return {
+    body: Buffer.from(JSON.stringify({
+      code: payload.code,
+      language: payload.language,
+      filename: payload.filename,
+      detectors: DETECTORS
+    })),
+    contentType: 'application/json'
+  };
+}
+
+// scheduledAt (hrtime) is when the request was due, which open-loop runs
+// count from even when it went out late
+function send(baseUrl, agent, endpoint, request, scheduledAt = process.hrtime.bigint()) {
+  return new Promise(resolve => {
+    const start = scheduledAt;
+    const done = status => resolve({ status, latencyMs: Number(process.hrtime.bigint() - start) / 1e6 });
+
+    const req = http.request(new URL(endpoint, baseUrl), {
+      method: 'POST',
+      agent,
+      headers: { 'Content-Type': request.contentType, 'Content-Length': request.body.length }
+    }, res => {
+      res.resume();
+      res.on('end', () => done(res.statusCode));
+    });
+    req.on('error', () => done(0));
+    req.end(request.body);
+  });
+}
+
+function percentile(sorted, p) {
+  if (sorted.length === 0) return null;
+  const rank = Math.ceil((p / 100) * sorted.length) - 1;
+  return sorted[Math.min(sorted.length - 1, Math.max(0, rank))];
+}
+
+function summarize(samples, elapsedMs) {
+  const latencies = samples.map(sample => sample.latencyMs).sort((a, b) => a - b);
+  const errors = samples.filter(sample => sample.status < 200 || sample.status >= 300).length;
+  const summary = {
+    requests: samples.length,
+    errors,
+    errorRate: samples.length > 0 ? errors / samples.length : 0,
+    rps: elapsedMs > 0 ? samples.length / (elapsedMs / 1000) : 0,
+    meanMs: latencies.length > 0 ? latencies.reduce((sum, v) => sum + v, 0) / latencies.length : null,
+    maxMs: latencies.length > 0 ? latencies[latencies.length - 1] : null
+  };
+  for (const p of PERCENTILES) {
+    summary[`p${p}Ms`] = percentile(latencies, p);
+  }
+  return summary;
+}
+
+// SLO file: { "overall": { "p99Ms": 800, "errorRate": 0.01, "minRps": 10 },
+//             "endpoints": { "/api/analyze-code": { "p95Ms": 300 } } }
+// Keys ending in "Ms" and "errorRate" are upper bounds; "minRps" is a lower bound.
+function checkSlo(report, slo) {
+  const violations = [];
+
+  const check = (scope, summary, limits) => {
+    for (const [key, limit] of Object.entries(limits || {})) {
+      if (key === 'minRps') {
+        if (summary.rps < limit) violations.push(`${scope}: ${summary.rps.toFixed(1)} req/s < ${limit}`);
+      } else if (summary[key] === undefined) {
+        violations.push(`${scope}: unknown SLO metric ${key}`);
+      } else if (summary[key] !== null && summary[key] > limit) {
+        violations.push(`${scope}: ${key} ${summary[key].toFixed(key === 'errorRate' ? 3 : 1)} > ${limit}`);
+      }
+    }
+  };
+
+  // Every latency percentile of an empty run is null and would pass
+  if (report.overall.requests === 0) {
+    violations.push('overall: no requests completed');
+  }
+
+  check('overall', report.overall, slo.overall);
+  for (const [endpoint, limits] of Object.entries(slo.endpoints || {})) {
+    if (!report.endpoints[endpoint]) {
+      violations.push(`${endpoint}: no requests were sent`);
+    } else {
+      check(endpoint, report.endpoints[endpoint], limits);
+    }
+  }
+
+  return violations;
+}
+
+// options.rate switches from closed-loop (options.concurrency workers, each
+// sending its next request when the last one completes) to open-loop
+async function runLoad(options) {
+  const { baseUrl, payloads, concurrency, rate, fileRatio } = options;
+  // Open-loop requests must not queue for a socket in the agent either
+  const agent = new http.Agent({ keepAlive: true, maxSockets: rate ? Infinity : concurrency });
+  const samples = [];
+  const deadline = options.durationMs ? Date.now() + options.durationMs : Infinity;
+  const limit = options.requests || Infinity;
+  let issued = 0;
+
+  const nextRequest = () => {
+    const index = issued++;
+    const payload = payloads[index % payloads.length];
+    // Deterministic interleaving keeps runs comparable: every 1/fileRatio-th request uploads a file
+    const endpoint = fileRatio > 0 && Math.floor((index + 1) * fileRatio) > Math.floor(index * fileRatio)
+      ? '/api/analyze-file'
+      : '/api/analyze-code';
+    return { endpoint, payload, request: buildRequest(endpoint, payload) };
+  };
+
+  const worker = async () => {
+    while (issued < limit && Date.now() < deadline) {
+      const { endpoint, payload, request } = nextRequest();
+      const result = await send(baseUrl, agent, endpoint, request);
+      samples.push({ endpoint, payload: payload.name, ...result });
+    }
+  };
+
+  // Request i is due at i / rate seconds after the start, whether or not
+  // earlier ones have been answered
+  const openLoop = async () => {
+    const intervalNs = BigInt(Math.round(1e9 / rate));
+    const start = process.hrtime.bigint();
+    const pending = [];
+
+    while (issued < limit) {
+      const scheduledAt = start + BigInt(issued) * intervalNs;
+      const waitMs = Number(scheduledAt - process.hrtime.bigint()) / 1e6;
+      if (Date.now() + Math.max(0, waitMs) >= deadline) break;
+      if (waitMs > 0) await new Promise(resolve => setTimeout(resolve, waitMs));
+
+      const { endpoint, payload, request } = nextRequest();
+      pending.push(send(baseUrl, agent, endpoint, request, scheduledAt)
+        .then(result => samples.push({ endpoint, payload: payload.name, ...result })));
+    }
+
+    await Promise.all(pending);
+  };
+
+  // Warm-up requests prime the JIT and are not measured
+  for (let i = 0; i < (options.warmup || 0); i++) {
+    const { endpoint, request } = nextRequest();
+    await send(baseUrl, agent, endpoint, request);
+  }
+  issued = 0;
+
+  const startTime = Date.now();
+  if (rate) {
+    await openLoop();
+  } else {
+    await Promise.all(Array.from({ length: concurrency }, worker));
+  }
+  const elapsedMs = Date.now() - startTime;
+  agent.destroy();
+
+  const endpoints = {};
+  for (const endpoint of new Set(samples.map(sample => sample.endpoint))) {
+    endpoints[endpoint] = summarize(samples.filter(sample => sample.endpoint === endpoint), elapsedMs);
+  }
+
+  return {
+    mode: rate ? 'open' : 'closed',
+    concurrency: rate ? null : concurrency,
+    rate: rate || null,
+    elapsedMs,
+    payloads: payloads.length,
+    overall: summarize(samples, elapsedMs),
+    endpoints
+  };
+}
+
+function freePort() {
+  return new Promise((resolve, reject) => {
+    const probe = net.createServer();
+    probe.once('error', reject);
+    probe.listen(0, '127.0.0.1', () => {
+      const { port } = probe.address();
+      probe.close(() => resolve(port));
+    });
+  });
+}
+
+async function waitForHealth(baseUrl, server) {
+  const deadline = Date.now() + STARTUP_TIMEOUT_MS;
+  while (Date.now() < deadline) {
+    if (server.exitCode !== null) throw new Error(`Server exited with code ${server.exitCode}`);
+    const healthy = await new Promise(resolve => {
+      http.get(new URL('/health', baseUrl), res => {
+        res.resume();
+        resolve(res.statusCode === 200);
+      }).on('error', () => resolve(false));
+    });
+    if (healthy) return;
+    await new Promise(resolve => setTimeout(resolve, 100));
+  }
+  throw new Error(`Server did not become healthy within ${STARTUP_TIMEOUT_MS} ms`);
+}
+
+async function startServer() {
+  const port = await freePort();
+  // Request logging would dominate the measurement, so server output is discarded
+  const server = spawn(process.execPath, [path.join(__dirname, 'server.js')], {
+    env: { ...process.env, PORT: String(port), NODE_ENV: 'production' },
+    stdio: 'ignore'
+  });
+  const baseUrl = `http://127.0.0.1:${port}`;
+
+  try {
+    await waitForHealth(baseUrl, server);
+  } catch (error) {
+    server.kill();
+    throw error;
+  }
+  return { server, baseUrl };
+}
+
+function formatReport(report) {
+  const row = (name, s) => [
+    name.padEnd(20),
+    String(s.requests).padStart(8),
+    s.rps.toFixed(1).padStart(8),
+    ...PERCENTILES.map(p => (s[`p${p}Ms`] === null ? '-' : s[`p${p}Ms`].toFixed(1)).padStart(9)),
+    (s.maxMs === null ? '-' : s.maxMs.toFixed(1)).padStart(9),
+    String(s.errors).padStart(7)
+  ].join('');
+
+  const load = report.mode === 'open'
+    ? `Open loop at ${report.rate} req/s`
+    : `Closed loop, concurrency ${report.concurrency}`;
+  const lines = [
+    `${load}, ${report.payloads} payloads, ${(report.elapsedMs / 1000).toFixed(1)} s`,
+    ['endpoint'.padEnd(20), 'requests'.padStart(8), 'req/s'.padStart(8),
+      ...PERCENTILES.map(p => `p${p} ms`.padStart(9)), 'max ms'.padStart(9), 'errors'.padStart(7)].join(''),
+    ...Object.entries(report.endpoints).map(([endpoint, summary]) => row(endpoint, summary)),
+    row('overall', report.overall)
+  ];
+  return lines.join('\n');
+}
+
+// Commander passes (value, previous), which would make a default the radix
+const parseInteger = value => parseInt(value, 10);
+const parseList = value => value.split(',').map(item => parseInt(item.trim(), 10)).filter(n => n > 0);
+const parseRates = value => value.split(',').map(item => parseFloat(item.trim())).filter(n => n > 0);
+
+async function main() {
+  const { Command } = require('commander');
+  const program = new Command();
+
+  program
+    .name('load-test')
+    .description('Replay analysis requests against the web server and check latency SLOs')
+    .option('-u, --url <url>', 'target a running server instead of starting one')
+    .option('-c, --concurrency <n>', 'closed loop: requests in flight at once', parseInteger, 8)
+    .option('-r, --rate <list>', 'open loop: arrival rates in req/s, one run per rate, e.g. 10,20,40', parseRates)
+    .option('-d, --duration <seconds>', 'how long to send requests', parseFloat, 30)
+    .option('-n, --requests <n>', 'stop after this many requests instead', parseInteger)
+    .option('--warmup <n>', 'unmeasured requests sent first', parseInteger, 20)
+    .option('--file-ratio <ratio>', 'share of requests sent to /api/analyze-file', parseFloat, 0.5)
+    .option('--scales <list>', 'payload size multipliers, e.g. 1,4,16', parseList, [1])
+    .option('--slo <file>', 'JSON file of latency, error-rate and throughput limits')
+    .option('--json', 'print the report as JSON');
+
+  program.parse();
+  const options = program.opts();
+
+  const payloads = buildPayloads(collectSources(SOURCE_DIRS.map(dir => path.join(ROOT_DIR, dir))), options.scales);
+  if (payloads.length === 0) {
+    console.error('Error: No sources found in samples/ or test-programs/');
+    process.exit(1);
+  }
+
+  let slo = null;
+  if (options.slo) {
+    try {
+      slo = JSON.parse(fs.readFileSync(options.slo, 'utf8'));
+    } catch (error) {
+      console.error(`Error: Could not read SLO file ${options.slo}: ${error.message}`);
+      process.exit(1);
+    }
+  }
+
+  // A rate sweep runs each rate in turn against the same server
+  const loads = options.rate && options.rate.length > 0
+    ? options.rate.map(rate => ({ rate }))
+    : [{ concurrency: options.concurrency }];
+
+  const local = options.url ? null : await startServer();
+  const reports = [];
+  try {
+    for (const load of loads) {
+      reports.push(await runLoad({
+        baseUrl: options.url || local.baseUrl,
+        payloads,
+        ...load,
+        durationMs: options.requests ? null : options.duration * 1000,
+        requests: options.requests,
+        warmup: options.warmup,
+        fileRatio: Math.min(1, Math.max(0, options.fileRatio))
+      }));
+    }
+  } finally {
+    if (local) local.server.kill();
+  }
+
+  const violations = [];
+  if (slo) {
+    for (const report of reports) {
+      const prefix = report.mode === 'open' && reports.length > 1 ? `${report.rate} req/s ` : '';
+      violations.push(...checkSlo(report, slo).map(violation => prefix + violation));
+    }
+  }
+
+  if (options.json) {
+    const sloResult = slo ? { passed: violations.length === 0, violations } : null;
+    const output = reports.length === 1 ? { ...reports[0], slo: sloResult } : { runs: reports, slo: sloResult };
+    console.log(JSON.stringify(output, null, 2));
+  } else {
+    console.log(reports.map(formatReport).join('\n\n'));
+    if (slo) {
+      console.log(violations.length === 0 ? 'SLO passed' : `SLO violated:\n  ${violations.join('\n  ')}`);
+    }
+  }
+
+  process.exit(violations.length > 0 ? 1 : 0);
+}
+
+if (require.main === module) {
+  main().catch(error => {
+    console.error('Error:', error.message);
+    process.exit(1);
+  });
+}
+
+module.exports = { buildPayloads, collectSources, percentile, summarize, checkSlo, runLoad };
@@ -0,0 +1,55 @@
+// ===== RESULT GROUPING =====
+// Shared by the page and results-worker.js (loaded there via importScripts),
+// so the main thread can fall back to the same logic when workers are unavailable.
+
+const SEVERITY_RANK = { high: 0, medium: 1, low: 2 };
+
+function firstLineOf(smell) {
+    const location = String(smell.location || smell.lines || '');
+    const match = location.match(/\d+/);
+    return match ? parseInt(match[0], 10) : Number.MAX_SAFE_INTEGER;
+}
+
+function groupSmells(smells) {
+    const groups = new Map();
+    const severityCount = { high: 0, medium: 0, low: 0 };
+
+    for (const smell of smells) {
+        const severity = smell.severity || 'medium';
+        if (severityCount[severity] !== undefined) {
+            severityCount[severity]++;
+        }
+
+        if (!groups.has(smell.type)) {
+            groups.set(smell.type, []);
+        }
+        groups.get(smell.type).push(smell);
+    }
+
+    // Groups with the most severe findings first, then by size
+    const orderedGroups = [...groups.entries()].map(([type, items]) => {
+        items.sort((a, b) => {
+            const severityDiff = (SEVERITY_RANK[a.severity] ?? 1) - (SEVERITY_RANK[b.severity] ?? 1);
+            return severityDiff !== 0 ? severityDiff : firstLineOf(a) - firstLineOf(b);
+        });
+        return { type, items, worst: SEVERITY_RANK[items[0].severity] ?? 1 };
+    }).sort((a, b) => a.worst - b.worst || b.items.length - a.items.length || a.type.localeCompare(b.type));
+
+    // Flatten into rows so the virtual list can index them directly
+    const rows = [];
+    for (const group of orderedGroups) {
+        rows.push({ kind: 'group', type: group.type, count: group.items.length });
+        for (const smell of group.items) {
+            rows.push({ kind: 'smell', smell });
+        }
+    }
+
+    return {
+        rows,
+        summary: {
+            totalSmells: smells.length,
+            smellTypes: groups.size,
+            severityCount
+        }
+    };
+}
@@ -0,0 +1,10 @@
+// ===== RESULTS WORKER =====
+// Groups and sorts detected smells off the main thread so large result sets
+// don't block rendering.
+importScripts('results-grouping.js');
+
+self.onmessage = function(event) {
+    const { requestId, smells } = event.data;
+    const grouped = groupSmells(smells || []);
+    self.postMessage({ requestId, ...grouped });
+};
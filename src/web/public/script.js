@@ -178,6 +178,7 @@ function toggleSmell(smellType, toggleElement) {
     activeSmells[smellType] = !activeSmells[smellType];
     toggleElement.classList.toggle('active');
     toggleElement.parentElement.parentElement.classList.toggle('active');
+    liveAnalysis.reopen();
 }
 
 // Update analyze button state
@@ -206,30 +207,21 @@ async function analyzeCode() {
     error.style.display = 'none';
     loading.style.display = 'block';
     analyzeBtn.disabled = true;
+    lastAnalysis = null;
 
     try {
         const formData = new FormData();
         
         console.log('🔍 Active smells before sending:', activeSmells);
         
-        // Add active detectors
-        Object.keys(activeSmells).forEach(smell => {
-            if (activeSmells[smell]) {
-                formData.append('detectors[]', smell);
-                console.log('✅ Adding detector:', smell);
-            } else {
-                console.log('❌ Skipping detector:', smell);
-            }
-        });
-
-        // Add thresholds
-        Object.keys(activeSmells).forEach(smell => {
-            const thresholdInput = document.getElementById(`threshold-${smell}`);
-            if (thresholdInput) {
-                formData.append(`threshold_${smell}`, thresholdInput.value);
-                console.log(`📊 Adding threshold ${smell}:`, thresholdInput.value);
-            }
+        // Add active detectors and thresholds
+        const settings = collectAnalysisSettings();
+        settings['detectors[]'].forEach(smell => formData.append('detectors[]', smell));
+        Object.keys(settings).filter(key => key.startsWith('threshold_')).forEach(key => {
+            formData.append(key, settings[key]);
         });
+        // Raw metrics let threshold changes be re-applied here without a new request
+        formData.append('metrics', 'true');
 
         // Log what we're sending
         console.log('📤 FormData entries:');
@@ -242,6 +234,7 @@ async function analyzeCode() {
             formData.append('codeFile', selectedFile);
             response = await fetch('/api/analyze-file', {
                 method: 'POST',
+                headers: { 'Accept': 'application/x-ndjson' },
                 body: formData
             });
         } else {
@@ -251,14 +244,20 @@ async function analyzeCode() {
             formData.append('language', language);
             response = await fetch('/api/analyze-code', {
                 method: 'POST',
+                headers: { 'Accept': 'application/x-ndjson' },
                 body: formData
             });
         }
 
+        if (response.ok && (response.headers.get('Content-Type') || '').includes('application/x-ndjson')) {
+            await readAnalysisStream(response);
+            return;
+        }
+
         const result = await response.json();
 
         if (response.ok) {
-            displayResults(result);
+            await displayResults(result);
         } else {
             throw new Error(result.error || 'Analysis failed');
         }
@@ -270,8 +269,484 @@ async function analyzeCode() {
     }
 }
 
-// Display results
-function displayResults(result) {
+// The server sends one JSON event per line as each analyzer finishes, cheap
+// ones first, so most smells are listed before duplication detection is done
+async function readAnalysisStream(response) {
+    const partial = { originalFilename: null, detected: [] };
+
+    const handleEvent = async (event) => {
+        if (event.type === 'start') {
+            partial.originalFilename = event.originalFilename;
+            if (event.defaultThresholds) {
+                lastAnalysis = {
+                    originalFilename: event.originalFilename,
+                    defaultThresholds: event.defaultThresholds,
+                    metrics: []
+                };
+            }
+        } else if (event.type === 'smells') {
+            if (lastAnalysis && event.metrics) {
+                // Thresholds may have changed since the request was sent
+                lastAnalysis.metrics.push([event.smellType, event.metrics, event.smells]);
+                await reapplyThresholds();
+                return;
+            }
+            if (event.smells.length === 0) return;
+            partial.detected = partial.detected.concat(event.smells);
+            await displayResults(partial, true);
+        } else if (event.type === 'done') {
+            // Also covers clean files, which never produce a non-empty batch
+            if (lastAnalysis) {
+                await reapplyThresholds();
+            } else {
+                await displayResults(partial, true);
+            }
+        } else if (event.type === 'error') {
+            throw new Error(event.details || event.error);
+        }
+    };
+
+    // Browsers without streamed response bodies get every event at the end
+    if (!response.body || !response.body.getReader) {
+        const text = await response.text();
+        for (const line of text.split('\n')) {
+            if (line.trim()) await handleEvent(JSON.parse(line));
+        }
+        return;
+    }
+
+    const reader = response.body.getReader();
+    const decoder = new TextDecoder();
+    let buffer = '';
+
+    while (true) {
+        const { value, done } = await reader.read();
+        buffer += done ? decoder.decode() : decoder.decode(value, { stream: true });
+
+        const lines = buffer.split('\n');
+        buffer = done ? '' : lines.pop();
+        for (const line of lines) {
+            if (line.trim()) await handleEvent(JSON.parse(line));
+        }
+        if (done) break;
+    }
+}
+
+// Collect the detector toggles and thresholds in the shape the server expects
+function collectAnalysisSettings() {
+    const settings = { 'detectors[]': [] };
+
+    Object.keys(activeSmells).forEach(smell => {
+        if (activeSmells[smell]) {
+            settings['detectors[]'].push(smell);
+        }
+
+        const thresholdInput = document.getElementById(`threshold-${smell}`);
+        if (thresholdInput) {
+            settings[`threshold_${smell}`] = thresholdInput.value;
+        }
+    });
+
+    return settings;
+}
+
+// Metrics of the last streamed analysis, as [smellType, metrics, smells] in
+// arrival order (smells as the server evaluated them for the request's
+// thresholds), and the server's defaults for thresholds left empty
+let lastAnalysis = null;
+
+// Filter the cached metrics with the current thresholds, using the same rules
+// as the server (smell-rules.js), so tuning a threshold never re-analyzes
+async function reapplyThresholds() {
+    if (!lastAnalysis) return;
+
+    // Without smell-rules.js (e.g. it failed to load) only the server's smells
+    // can be shown, and threshold changes need a new analysis
+    if (typeof SmellRules === 'undefined') {
+        if (!lastAnalysis.rulesMissingShown) {
+            lastAnalysis.rulesMissingShown = true;
+            showError('Threshold rules could not be loaded; results use the thresholds of the last analysis. Analyze again to apply new thresholds.');
+        }
+        const detected = lastAnalysis.metrics.flatMap(([, , smells]) => smells || []);
+        await displayResults({ originalFilename: lastAnalysis.originalFilename, detected }, true);
+        return;
+    }
+
+    const thresholds = SmellRules.thresholdsFromSettings(collectAnalysisSettings(), lastAnalysis.defaultThresholds);
+    let detected = [];
+    for (const [smellType, metrics] of lastAnalysis.metrics) {
+        detected = detected.concat(SmellRules.evaluate(smellType, metrics, thresholds));
+    }
+
+    await displayResults({ originalFilename: lastAnalysis.originalFilename, detected }, true);
+}
+
+// ===== LIVE ANALYSIS =====
+// While the paste tab is active, edits are streamed over a WebSocket and the
+// server answers with smell deltas, so only the edited methods are re-analyzed.
+class LiveAnalysis {
+    constructor() {
+        this.socket = null;
+        this.smells = new Map();
+        this.sentLines = null;
+        this.version = 0;
+        this.debounceTimer = null;
+        this.renderScheduled = false;
+    }
+
+    connect() {
+        if (this.socket || typeof WebSocket === 'undefined') return;
+
+        const protocol = location.protocol === 'https:' ? 'wss' : 'ws';
+        this.socket = new WebSocket(`${protocol}://${location.host}/api/live`);
+        this.socket.addEventListener('open', () => this.reopen());
+        this.socket.addEventListener('message', (event) => this.onMessage(JSON.parse(event.data)));
+        this.socket.addEventListener('close', () => {
+            // Fall back to the Analyze button until the next edit reconnects
+            this.socket = null;
+            this.sentLines = null;
+        });
+    }
+
+    isReady() {
+        return this.socket && this.socket.readyState === WebSocket.OPEN;
+    }
+
+    // Send the whole buffer, e.g. after a language or settings change
+    reopen() {
+        if (!this.isReady()) return;
+
+        const code = document.getElementById('code-input').value;
+        this.sentLines = code.split('\n');
+        this.socket.send(JSON.stringify({
+            type: 'open',
+            version: ++this.version,
+            language: document.getElementById('language-select').value,
+            settings: collectAnalysisSettings(),
+            code
+        }));
+    }
+
+    onInput() {
+        clearTimeout(this.debounceTimer);
+        this.debounceTimer = setTimeout(() => this.sendEdit(), 30);
+    }
+
+    sendEdit() {
+        if (!this.isReady()) {
+            this.connect();
+            return;
+        }
+        if (this.sentLines === null) {
+            this.reopen();
+            return;
+        }
+
+        const lines = document.getElementById('code-input').value.split('\n');
+        const edit = diffLines(this.sentLines, lines);
+        if (!edit) return;
+
+        this.sentLines = lines;
+        this.socket.send(JSON.stringify({ type: 'edit', version: ++this.version, edits: [edit] }));
+    }
+
+    onMessage(message) {
+        if (message.type === 'snapshot') {
+            this.smells = new Map(message.smells.map(smell => [smell.id, smell]));
+        } else if (message.type === 'delta') {
+            for (const change of message.changes) {
+                change.removed.forEach(id => this.smells.delete(id));
+                if (change.shift.delta !== 0) {
+                    for (const smell of this.smells.values()) {
+                        smell.lines = shiftLines(smell.lines, change.shift.fromLine, change.shift.delta);
+                    }
+                }
+                change.added.forEach(smell => this.smells.set(smell.id, smell));
+            }
+        } else if (message.type === 'error') {
+            // The server-side model may be out of sync; start over from the full buffer
+            console.warn('Live analysis error:', message.details);
+            this.reopen();
+            return;
+        }
+
+        this.scheduleRender();
+    }
+
+    scheduleRender() {
+        if (this.renderScheduled) return;
+        this.renderScheduled = true;
+        requestAnimationFrame(() => {
+            this.renderScheduled = false;
+            if (document.querySelector('.tab.active').dataset.tab === 'upload') return;
+            displayResults({
+                originalFilename: 'Live Analysis',
+                detected: [...this.smells.values()]
+            });
+        });
+    }
+}
+
+// Same rule as the server: every line number at or after fromLine moves by delta
+function shiftLines(lines, fromLine, delta) {
+    return String(lines).replace(/\d+/g, n => {
+        const line = parseInt(n, 10);
+        return line >= fromLine ? String(line + delta) : n;
+    });
+}
+
+// Smallest single line-range replacement turning oldLines into newLines
+function diffLines(oldLines, newLines) {
+    let prefix = 0;
+    const maxPrefix = Math.min(oldLines.length, newLines.length);
+    while (prefix < maxPrefix && oldLines[prefix] === newLines[prefix]) {
+        prefix++;
+    }
+
+    let suffix = 0;
+    const maxSuffix = Math.min(oldLines.length, newLines.length) - prefix;
+    while (suffix < maxSuffix &&
+           oldLines[oldLines.length - 1 - suffix] === newLines[newLines.length - 1 - suffix]) {
+        suffix++;
+    }
+
+    if (prefix === oldLines.length && prefix === newLines.length) return null;
+
+    return {
+        start: prefix,
+        deleteCount: oldLines.length - prefix - suffix,
+        lines: newLines.slice(prefix, newLines.length - suffix)
+    };
+}
+
+const liveAnalysis = new LiveAnalysis();
+
+// ===== VIRTUALIZED RESULTS LIST =====
+// Only the rows inside the viewport (plus a small overscan) exist in the DOM,
+// so thousands of smells render as fast as a handful. Rows keep their natural
+// height: rowHeights only estimates rows that were never rendered, and every
+// rendered row is measured so the offsets follow the real layout.
+class VirtualList {
+    constructor(container, renderRow) {
+        this.container = container;
+        this.renderRow = renderRow;
+        this.rows = [];
+        this.heights = [];
+        this.offsets = [0];
+        this.overscan = 6;
+        this.rowHeights = { group: 44, smell: 124 };
+        this.firstRendered = -1;
+        this.lastRendered = -1;
+
+        this.container.classList.add('virtual-list');
+        this.spacer = document.createElement('div');
+        this.spacer.className = 'virtual-list-spacer';
+        this.viewport = document.createElement('div');
+        this.viewport.className = 'virtual-list-viewport';
+        this.container.appendChild(this.spacer);
+        this.container.appendChild(this.viewport);
+
+        this.scheduled = false;
+        this.onScroll = () => this.scheduleRender();
+        // A new width re-wraps the text, so the rendered rows are measured again
+        this.onResize = () => {
+            this.firstRendered = -1;
+            this.scheduleRender();
+        };
+        this.container.addEventListener('scroll', this.onScroll);
+        window.addEventListener('resize', this.onResize);
+    }
+
+    // Detach from the container and window so the list can be dropped
+    destroy() {
+        this.container.removeEventListener('scroll', this.onScroll);
+        window.removeEventListener('resize', this.onResize);
+        this.container.classList.remove('virtual-list');
+        this.spacer.remove();
+        this.viewport.remove();
+        this.rows = [];
+    }
+
+    // keepScroll: the rows grew while streaming in, so stay where the user is
+    setRows(rows, keepScroll = false) {
+        this.rows = rows;
+        this.heights = rows.map(row => this.rowHeights[row.kind]);
+        this.updateOffsets();
+
+        if (!keepScroll) this.container.scrollTop = 0;
+        this.firstRendered = -1;
+        this.lastRendered = -1;
+        this.render();
+    }
+
+    updateOffsets() {
+        this.offsets = new Array(this.rows.length + 1);
+        this.offsets[0] = 0;
+        for (let i = 0; i < this.rows.length; i++) {
+            this.offsets[i + 1] = this.offsets[i] + this.heights[i];
+        }
+        this.spacer.style.height = `${this.offsets[this.rows.length]}px`;
+    }
+
+    // Record the heights of the rendered rows; rows above the one at the top of
+    // the view shift the scroll position by however much they grew
+    measure(first, last) {
+        // A hidden list lays nothing out, so there is nothing to measure
+        if (this.container.offsetParent === null) return;
+
+        const anchor = this.indexAt(this.container.scrollTop);
+        const rendered = this.viewport.children;
+        let changed = false;
+        let shift = 0;
+
+        for (let i = first; i <= last; i++) {
+            const height = rendered[i - first].offsetHeight;
+            if (height === this.heights[i]) continue;
+            if (i < anchor) shift += height - this.heights[i];
+            this.heights[i] = height;
+            changed = true;
+        }
+        if (!changed) return;
+
+        this.updateOffsets();
+        this.viewport.style.transform = `translateY(${this.offsets[first]}px)`;
+        if (shift !== 0) this.container.scrollTop += shift;
+        // The measured rows may now cover a different range of the view
+        this.firstRendered = -1;
+        this.scheduleRender();
+    }
+
+    scheduleRender() {
+        if (this.scheduled) return;
+        this.scheduled = true;
+        requestAnimationFrame(() => {
+            this.scheduled = false;
+            if (this.viewport.isConnected) this.render();
+        });
+    }
+
+    // Binary search for the row containing the given pixel offset
+    indexAt(offset) {
+        let low = 0;
+        let high = this.rows.length - 1;
+        while (low < high) {
+            const mid = (low + high + 1) >> 1;
+            if (this.offsets[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    render() {
+        if (this.rows.length === 0) {
+            this.viewport.innerHTML = '';
+            return;
+        }
+
+        const scrollTop = this.container.scrollTop;
+        const viewHeight = this.container.clientHeight;
+        const first = Math.max(0, this.indexAt(scrollTop) - this.overscan);
+        const last = Math.min(this.rows.length - 1, this.indexAt(scrollTop + viewHeight) + this.overscan);
+
+        if (first === this.firstRendered && last === this.lastRendered) return;
+        this.firstRendered = first;
+        this.lastRendered = last;
+
+        let html = '';
+        for (let i = first; i <= last; i++) {
+            html += `<div class="virtual-row virtual-row-${this.rows[i].kind}">${this.renderRow(this.rows[i])}</div>`;
+        }
+        this.viewport.style.transform = `translateY(${this.offsets[first]}px)`;
+        this.viewport.innerHTML = html;
+        this.measure(first, last);
+    }
+}
+
+let resultsList = null;
+let resultsWorker = null;
+let resultsWorkerFailed = false;
+let resultsRequestId = 0;
+let displayGeneration = 0;
+
+function escapeHtml(value) {
+    return String(value)
+        .replace(/&/g, '&amp;')
+        .replace(/</g, '&lt;')
+        .replace(/>/g, '&gt;')
+        .replace(/"/g, '&quot;');
+}
+
+function renderResultRow(row) {
+    if (row.kind === 'group') {
+        return `
+            <div class="smell-group-header">
+                <span class="smell-group-type">${escapeHtml(row.type)}</span>
+                <span class="smell-group-count">${row.count}</span>
+            </div>
+        `;
+    }
+
+    const smell = row.smell;
+    return `
+        <div class="smell-item severity-${escapeHtml(smell.severity || 'medium')}">
+            <div class="smell-type">${escapeHtml(smell.type)}</div>
+            <div class="smell-location">${escapeHtml(smell.location || smell.lines || 'Unknown location')}</div>
+            <div class="smell-description">${escapeHtml(smell.description)}</div>
+            ${smell.details ? `<div class="smell-details">${escapeHtml(smell.details)}</div>` : ''}
+        </div>
+    `;
+}
+
+// Group and sort in a worker when available, otherwise on the main thread
+function groupSmellsAsync(smells) {
+    if (typeof Worker === 'undefined') {
+        return Promise.resolve(groupSmells(smells));
+    }
+
+    if (resultsWorkerFailed) {
+        return Promise.resolve(groupSmells(smells));
+    }
+
+    if (!resultsWorker) {
+        try {
+            resultsWorker = new Worker('results-worker.js');
+        } catch (err) {
+            console.warn('Results worker unavailable, grouping on main thread:', err.message);
+            return Promise.resolve(groupSmells(smells));
+        }
+    }
+
+    const requestId = ++resultsRequestId;
+    return new Promise((resolve) => {
+        const worker = resultsWorker;
+        const onMessage = (event) => {
+            if (event.data.requestId !== requestId) return;
+            worker.removeEventListener('message', onMessage);
+            worker.removeEventListener('error', onError);
+            resolve(event.data);
+        };
+        // A worker that failed once (e.g. results-grouping.js did not load) never
+        // answers again; drop it and group on the main thread from now on
+        const onError = (event) => {
+            console.warn('Results worker failed, grouping on main thread:', event.message);
+            worker.removeEventListener('message', onMessage);
+            worker.removeEventListener('error', onError);
+            worker.terminate();
+            if (resultsWorker === worker) resultsWorker = null;
+            resultsWorkerFailed = true;
+            resolve(groupSmells(smells));
+        };
+        worker.addEventListener('message', onMessage);
+        worker.addEventListener('error', onError);
+        worker.postMessage({ requestId, smells });
+    });
+}
+
+// Display results; partial results of a streamed analysis keep the scroll position
+async function displayResults(result, streaming = false) {
     const results = document.getElementById('results');
     const filename = document.getElementById('analyzed-filename');
     const summary = document.getElementById('summary');
@@ -280,15 +755,15 @@ function displayResults(result) {
     // Set filename
     filename.textContent = result.filename || result.originalFilename || 'Code Analysis';
 
-    // Create summary - handle both old and new result formats
+    // Handle both old and new result formats
     const smells = result.smells || result.detected || [];
-    const totalSmells = smells.length;
-    const smellTypes = [...new Set(smells.map(s => s.type))].length;
-    const severityCount = {
-        high: smells.filter(s => s.severity === 'high').length,
-        medium: smells.filter(s => s.severity === 'medium').length,
-        low: smells.filter(s => s.severity === 'low').length
-    };
+    const generation = ++displayGeneration;
+    const grouped = await groupSmellsAsync(smells);
+
+    // A newer analysis finished while this one was being grouped
+    if (generation !== displayGeneration) return;
+
+    const { totalSmells, smellTypes, severityCount } = grouped.summary;
 
     summary.innerHTML = `
         <div class="summary-item">
@@ -315,16 +790,17 @@ function displayResults(result) {
 
     // Create smells list
     if (smells.length === 0) {
+        if (resultsList) resultsList.destroy();
+        resultsList = null;
         smellsList.innerHTML = '<div class="no-smells">No code smells detected! Your code looks clean.</div>';
     } else {
-        smellsList.innerHTML = smells.map(smell => `
-            <div class="smell-item severity-${smell.severity || 'medium'}">
-                <div class="smell-type">${smell.type}</div>
-                <div class="smell-location">${smell.location || smell.lines || 'Unknown location'}</div>
-                <div class="smell-description">${smell.description}</div>
-                ${smell.details ? `<div class="smell-details">${smell.details}</div>` : ''}
-            </div>
-        `).join('');
+        if (!resultsList) {
+            smellsList.innerHTML = '';
+            resultsList = new VirtualList(smellsList, renderResultRow);
+        }
+        // The list must be visible before it can measure its viewport
+        results.style.display = 'block';
+        resultsList.setRows(grouped.rows, streaming);
     }
 
     results.style.display = 'block';
@@ -341,6 +817,18 @@ function showError(message) {
 document.addEventListener('DOMContentLoaded', function() {
     updateAnalyzeButton();
     
+    // Live analysis of pasted code
+    document.getElementById('code-input').addEventListener('input', () => liveAnalysis.onInput());
+    document.getElementById('language-select').addEventListener('change', () => liveAnalysis.reopen());
+    document.querySelectorAll('.threshold-input').forEach(input => {
+        // The live session keeps its own server-side state and owns the paste tab's results
+        input.addEventListener('input', () => {
+            const liveShown = liveAnalysis.isReady() && document.querySelector('.tab.active').dataset.tab !== 'upload';
+            if (!liveShown) reapplyThresholds();
+        });
+        input.addEventListener('change', () => liveAnalysis.reopen());
+    });
+    
     // Initialize background animation
     window.backgroundAnimation = new BackgroundAnimation();
 });
\ No newline at end of file
@@ -3,7 +3,11 @@ const multer = require('multer');
 const path = require('path');
 const fs = require('fs');
 const Detector = require('../detector');
+const SmellRules = require('../smellRules');
+const LiveAnalysisSession = require('./liveSession');
+const { attachWebSocketServer } = require('./websocket');
 const yaml = require('js-yaml');
+const crypto = require('crypto');
 
 const app = express();
 const PORT = process.env.PORT || 3000;
@@ -22,7 +26,8 @@ const storage = multer.diskStorage({
   filename: (req, file, cb) => {
     const timestamp = Date.now();
     const originalName = file.originalname.replace(/[^a-zA-Z0-9.-]/g, '_');
-    cb(null, `${timestamp}_${originalName}`);
+    // Concurrent uploads within the same millisecond must not share a path
+    cb(null, `${timestamp}_${crypto.randomBytes(4).toString('hex')}_${originalName}`);
   }
 });
 
@@ -61,15 +66,97 @@ try {
     },
     thresholds: {
       LongMethod: 40,
+      LongMethodCyclomatic: 10,
+      LongMethodCognitive: 15,
       LargeParameterList: 5,
       GodClassMethods: 10,
       GodClassFields: 15,
+      GodClassLCOM4: 3,
       DuplicatedCodeSimilarity: 0.8,
       FeatureEnvyThreshold: 3
+    },
+    analysis: {
+      ignoreComments: true,
+      ignoreEmptyLines: true
     }
   };
 }
 
+// Build a detector config from the form fields sent by the web UI
+function buildAnalysisConfig(body) {
+  let activeDetectors = body['detectors[]'] || body.detectors || [];
+  
+  // Handle single values vs arrays
+  if (typeof activeDetectors === 'string') {
+    activeDetectors = [activeDetectors];
+  }
+  
+  // Also check for individual detector fields as fallback
+  if (!activeDetectors || activeDetectors.length === 0) {
+    activeDetectors = [];
+    if (body.longMethod === 'true') activeDetectors.push('longMethod');
+    if (body.godClass === 'true') activeDetectors.push('godClass');
+    if (body.duplicatedCode === 'true') activeDetectors.push('duplicatedCode');
+    if (body.largeParameterList === 'true') activeDetectors.push('largeParameterList');
+    if (body.magicNumbers === 'true') activeDetectors.push('magicNumbers');
+    if (body.featureEnvy === 'true') activeDetectors.push('featureEnvy');
+  }
+  
+  return {
+    smells: {
+      LongMethod: activeDetectors.includes('longMethod'),
+      GodClass: activeDetectors.includes('godClass'),
+      DuplicatedCode: activeDetectors.includes('duplicatedCode'),
+      LargeParameterList: activeDetectors.includes('largeParameterList'),
+      MagicNumbers: activeDetectors.includes('magicNumbers'),
+      FeatureEnvy: activeDetectors.includes('featureEnvy')
+    },
+    // Shared with the browser, which re-applies thresholds to cached metrics
+    thresholds: SmellRules.thresholdsFromSettings(body, defaultConfig.thresholds),
+    analysis: defaultConfig.analysis
+  };
+}
+
+// Clients that accept NDJSON get each analyzer's smells as soon as it finishes
+function wantsStream(req) {
+  return (req.get('Accept') || '').includes('application/x-ndjson');
+}
+
+// One JSON object per line: "start", one "smells" per analyzer (cheapest
+// first) and "done" with the summary, or "error" once the stream has begun.
+// With withMetrics, "smells" events also carry the analyzer's raw metrics and
+// "start" the default thresholds, so the browser can re-apply thresholds itself
+async function streamAnalysis(res, detector, content, filePath, filename, withMetrics = false) {
+  res.status(200).set({
+    'Content-Type': 'application/x-ndjson; charset=utf-8',
+    'Cache-Control': 'no-cache',
+    // Keep reverse proxies from buffering the partial results
+    'X-Accel-Buffering': 'no'
+  });
+  res.flushHeaders();
+  const send = (event) => res.write(JSON.stringify(event) + '\n');
+
+  const start = { type: 'start', originalFilename: filename, analyzers: Object.keys(detector.analyzers) };
+  if (withMetrics) start.defaultThresholds = defaultConfig.thresholds;
+  send(start);
+
+  try {
+    const perAnalyzer = [];
+    for await (const { smellType, smells, metrics } of detector.analyzeStream(content, filePath, { metrics: withMetrics })) {
+      perAnalyzer.push([smellType, smells]);
+      send(withMetrics ? { type: 'smells', smellType, smells, metrics } : { type: 'smells', smellType, smells });
+    }
+
+    const { detected, ...result } = detector.buildResult(perAnalyzer, content, filePath);
+    send({ type: 'done', ...result, originalFilename: filename });
+  } catch (error) {
+    console.error('Analysis error:', error);
+    send({ type: 'error', error: 'Analysis failed', details: error.message });
+  }
+
+  res.end();
+}
+
 // Middleware
 app.use(express.static(path.join(__dirname, 'public')));
 app.use(express.json());
@@ -80,6 +167,11 @@ app.get('/', (req, res) => {
   res.sendFile(path.join(__dirname, 'public', 'index.html'));
 });
 
+// Threshold rules the browser applies to the metrics of a streamed analysis
+app.get('/smell-rules.js', (req, res) => {
+  res.sendFile(path.join(__dirname, '..', 'smellRules.js'));
+});
+
 // Health check endpoint for Render
 app.get('/health', (req, res) => {
   res.status(200).json({ 
@@ -106,51 +198,19 @@ app.post('/api/analyze-file', upload.single('codeFile'), async (req, res) => {
     const originalName = req.file.originalname;
     console.log(`📄 Processing file: ${originalName} at ${filePath}`);
     
-    // Parse configuration from request - handle multiple formats
-    let activeDetectors = req.body['detectors[]'] || req.body.detectors || [];
-    
-    // Handle single values vs arrays
-    if (typeof activeDetectors === 'string') {
-      activeDetectors = [activeDetectors];
-    }
-    
-    // Also check for individual detector fields as fallback
-    if (!activeDetectors || activeDetectors.length === 0) {
-      activeDetectors = [];
-      if (req.body.longMethod === 'true') activeDetectors.push('longMethod');
-      if (req.body.godClass === 'true') activeDetectors.push('godClass');
-      if (req.body.duplicatedCode === 'true') activeDetectors.push('duplicatedCode');
-      if (req.body.largeParameterList === 'true') activeDetectors.push('largeParameterList');
-      if (req.body.magicNumbers === 'true') activeDetectors.push('magicNumbers');
-      if (req.body.featureEnvy === 'true') activeDetectors.push('featureEnvy');
-    }
-    
-    console.log('🎯 Active detectors:', activeDetectors);
-    
-    const config = {
-      smells: {
-        LongMethod: activeDetectors.includes('longMethod'),
-        GodClass: activeDetectors.includes('godClass'),
-        DuplicatedCode: activeDetectors.includes('duplicatedCode'),
-        LargeParameterList: activeDetectors.includes('largeParameterList'),
-        MagicNumbers: activeDetectors.includes('magicNumbers'),
-        FeatureEnvy: activeDetectors.includes('featureEnvy')
-      },
-      thresholds: {
-        LongMethod: parseInt(req.body.threshold_longMethod) || defaultConfig.thresholds.LongMethod,
-        LargeParameterList: parseInt(req.body.threshold_largeParameterList) || defaultConfig.thresholds.LargeParameterList,
-        GodClassMethods: parseInt(req.body.threshold_godClass) || defaultConfig.thresholds.GodClassMethods,
-        GodClassFields: parseInt(req.body.threshold_godClass) || defaultConfig.thresholds.GodClassFields,
-        DuplicatedCodeSimilarity: parseFloat(req.body.threshold_duplicatedCode) || defaultConfig.thresholds.DuplicatedCodeSimilarity,
-        FeatureEnvyThreshold: parseInt(req.body.threshold_featureEnvy) || defaultConfig.thresholds.FeatureEnvyThreshold
-      }
-    };
+    const config = buildAnalysisConfig(req.body);
+    console.log('🎯 Active smells:', Object.keys(config.smells).filter(smell => config.smells[smell]));
 
     console.log('⚙️ Analysis config:', config);
 
     // Analyze the file
     const detector = new Detector(config);
     console.log('🔍 Starting analysis...');
+    if (wantsStream(req)) {
+      const content = fs.readFileSync(filePath, 'utf8');
+      fs.unlinkSync(filePath);
+      return await streamAnalysis(res, detector, content, filePath, originalName, req.body.metrics === 'true');
+    }
     const result = await detector.analyze(filePath);
     console.log('✅ Analysis complete:', result);
     
@@ -188,48 +248,18 @@ app.post('/api/analyze-code', async (req, res) => {
       return res.status(400).json({ error: 'Language must be python or java' });
     }
 
-    // Parse configuration from request
-    let activeDetectors = req.body['detectors[]'] || req.body.detectors || [];
-    
-    // Handle single values vs arrays
-    if (typeof activeDetectors === 'string') {
-      activeDetectors = [activeDetectors];
-    }
-    
-    // Also check for individual detector fields as fallback
-    if (!activeDetectors || activeDetectors.length === 0) {
-      activeDetectors = [];
-      if (req.body.longMethod === 'true') activeDetectors.push('longMethod');
-      if (req.body.godClass === 'true') activeDetectors.push('godClass');
-      if (req.body.duplicatedCode === 'true') activeDetectors.push('duplicatedCode');
-      if (req.body.largeParameterList === 'true') activeDetectors.push('largeParameterList');
-      if (req.body.magicNumbers === 'true') activeDetectors.push('magicNumbers');
-      if (req.body.featureEnvy === 'true') activeDetectors.push('featureEnvy');
+    const config = buildAnalysisConfig(req.body);
+    const extension = language === 'python' ? '.py' : '.java';
+
+    // Pasted code is already in memory, so streaming needs no temporary file
+    if (wantsStream(req)) {
+      const detector = new Detector(config);
+      return await streamAnalysis(res, detector, code, `pasted${extension}`, filename || `temp${extension}`, req.body.metrics === 'true');
     }
-    
-    const config = {
-      smells: {
-        LongMethod: activeDetectors.includes('longMethod'),
-        GodClass: activeDetectors.includes('godClass'),
-        DuplicatedCode: activeDetectors.includes('duplicatedCode'),
-        LargeParameterList: activeDetectors.includes('largeParameterList'),
-        MagicNumbers: activeDetectors.includes('magicNumbers'),
-        FeatureEnvy: activeDetectors.includes('featureEnvy')
-      },
-      thresholds: {
-        LongMethod: parseInt(req.body.threshold_longMethod) || defaultConfig.thresholds.LongMethod,
-        LargeParameterList: parseInt(req.body.threshold_largeParameterList) || defaultConfig.thresholds.LargeParameterList,
-        GodClassMethods: parseInt(req.body.threshold_godClass) || defaultConfig.thresholds.GodClassMethods,
-        GodClassFields: parseInt(req.body.threshold_godClass) || defaultConfig.thresholds.GodClassFields,
-        DuplicatedCodeSimilarity: parseFloat(req.body.threshold_duplicatedCode) || defaultConfig.thresholds.DuplicatedCodeSimilarity,
-        FeatureEnvyThreshold: parseInt(req.body.threshold_featureEnvy) || defaultConfig.thresholds.FeatureEnvyThreshold
-      }
-    };
 
     // Create temporary file
     const timestamp = Date.now();
-    const extension = language === 'python' ? '.py' : '.java';
-    const tempFilename = `temp_${timestamp}${extension}`;
+    const tempFilename = `temp_${timestamp}_${crypto.randomBytes(4).toString('hex')}${extension}`;
     const tempFilePath = path.join(__dirname, 'uploads', tempFilename);
     
     // Write code to temporary file
@@ -276,6 +306,44 @@ const server = app.listen(PORT, '0.0.0.0', () => {
   console.log(`🌐 Health check: http://localhost:${PORT}/health`);
 });
 
+// Live analysis: the browser streams line edits, we answer with smell deltas
+attachWebSocketServer(server, '/api/live', (connection) => {
+  let session = null;
+  let queue = Promise.resolve();
+
+  const handleMessage = async (message) => {
+    if (message.type === 'open') {
+      if (!['python', 'java'].includes(message.language)) {
+        throw new Error('Language must be python or java');
+      }
+      session = new LiveAnalysisSession(buildAnalysisConfig(message.settings || {}), message.language);
+      const smells = await session.open(message.code || '');
+      connection.send({ type: 'snapshot', version: message.version, smells });
+    } else if (message.type === 'edit') {
+      if (!session) {
+        throw new Error('No live session open');
+      }
+      const changes = [];
+      for (const edit of message.edits || []) {
+        changes.push(await session.applyEdit(edit));
+      }
+      connection.send({ type: 'delta', version: message.version, changes });
+    }
+  };
+
+  connection.on('message', (text) => {
+    // Edits must be applied in the order they were typed
+    queue = queue.then(() => handleMessage(JSON.parse(text))).catch((error) => {
+      console.error('Live analysis error:', error.message);
+      connection.send({ type: 'error', error: 'Analysis failed', details: error.message });
+    });
+  });
+
+  connection.on('close', () => {
+    session = null;
+  });
+});
+
 // Graceful shutdown
 process.on('SIGTERM', () => {
   console.log('📴 SIGTERM received, shutting down gracefully');
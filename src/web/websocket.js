@@ -0,0 +1,191 @@
+const crypto = require('crypto');
+const { EventEmitter } = require('events');
+
+// Minimal RFC 6455 server: text frames, ping/pong and close. That is all the
+// live analysis channel needs, so we avoid pulling in a WebSocket dependency.
+const HANDSHAKE_GUID = '258EAFA5-E914-47DA-95CA-C5AB0DC85B11';
+const MAX_MESSAGE_SIZE = 5 * 1024 * 1024; // Same limit as file uploads
+
+const OPCODES = {
+  continuation: 0x0,
+  text: 0x1,
+  close: 0x8,
+  ping: 0x9,
+  pong: 0xA
+};
+
+class WebSocketConnection extends EventEmitter {
+  constructor(socket) {
+    super();
+    this.socket = socket;
+    this.buffer = Buffer.alloc(0);
+    this.fragments = [];
+    // Bytes held in fragments; the size limit applies to the whole message
+    this.fragmentsLength = 0;
+    this.closed = false;
+
+    socket.setNoDelay(true);
+    socket.on('data', chunk => this.onData(chunk));
+    socket.on('close', () => this.onClose());
+    socket.on('error', () => this.onClose());
+  }
+
+  onData(chunk) {
+    if (this.closed) return;
+    this.buffer = this.buffer.length ? Buffer.concat([this.buffer, chunk]) : chunk;
+
+    let frame;
+    while (!this.closed && (frame = this.readFrame()) !== null) {
+      this.handleFrame(frame);
+    }
+  }
+
+  readFrame() {
+    const buffer = this.buffer;
+    if (buffer.length < 2) return null;
+
+    const fin = (buffer[0] & 0x80) !== 0;
+    const opcode = buffer[0] & 0x0F;
+    const masked = (buffer[1] & 0x80) !== 0;
+    let length = buffer[1] & 0x7F;
+    let offset = 2;
+
+    if (length === 126) {
+      if (buffer.length < 4) return null;
+      length = buffer.readUInt16BE(2);
+      offset = 4;
+    } else if (length === 127) {
+      if (buffer.length < 10) return null;
+      length = Number(buffer.readBigUInt64BE(2));
+      offset = 10;
+    }
+
+    // RFC 6455 5.1: a server must fail the connection on unmasked client frames
+    if (!masked) {
+      this.close(1002, 'Client frames must be masked');
+      return null;
+    }
+
+    const fragment = opcode === OPCODES.text || opcode === OPCODES.continuation;
+    if (length > MAX_MESSAGE_SIZE || (fragment && this.fragmentsLength + length > MAX_MESSAGE_SIZE)) {
+      this.close(1009, 'Message too big');
+      return null;
+    }
+
+    const maskOffset = offset;
+    offset += 4;
+    if (buffer.length < offset + length) return null;
+
+    const payload = Buffer.from(buffer.subarray(offset, offset + length));
+    for (let i = 0; i < payload.length; i++) {
+      payload[i] ^= buffer[maskOffset + (i % 4)];
+    }
+
+    this.buffer = buffer.subarray(offset + length);
+    return { fin, opcode, payload };
+  }
+
+  handleFrame({ fin, opcode, payload }) {
+    if (opcode === OPCODES.text || opcode === OPCODES.continuation) {
+      this.fragments.push(payload);
+      this.fragmentsLength += payload.length;
+      if (fin) {
+        const message = Buffer.concat(this.fragments).toString('utf8');
+        this.fragments = [];
+        this.fragmentsLength = 0;
+        this.emit('message', message);
+      }
+    } else if (opcode === OPCODES.ping) {
+      this.writeFrame(OPCODES.pong, payload);
+    } else if (opcode === OPCODES.close) {
+      this.close();
+    }
+  }
+
+  writeFrame(opcode, payload) {
+    if (this.closed) return;
+
+    let header;
+    if (payload.length < 126) {
+      header = Buffer.from([0x80 | opcode, payload.length]);
+    } else if (payload.length < 65536) {
+      header = Buffer.alloc(4);
+      header[0] = 0x80 | opcode;
+      header[1] = 126;
+      header.writeUInt16BE(payload.length, 2);
+    } else {
+      header = Buffer.alloc(10);
+      header[0] = 0x80 | opcode;
+      header[1] = 127;
+      header.writeBigUInt64BE(BigInt(payload.length), 2);
+    }
+
+    this.socket.write(Buffer.concat([header, payload]));
+  }
+
+  send(message) {
+    const text = typeof message === 'string' ? message : JSON.stringify(message);
+    this.writeFrame(OPCODES.text, Buffer.from(text, 'utf8'));
+  }
+
+  close(code = 1000, reason = '') {
+    if (this.closed) return;
+
+    const payload = Buffer.alloc(2 + Buffer.byteLength(reason));
+    payload.writeUInt16BE(code, 0);
+    payload.write(reason, 2);
+    this.writeFrame(OPCODES.close, payload);
+    this.closed = true;
+    this.socket.end();
+    this.emit('close');
+  }
+
+  onClose() {
+    if (this.closed) return;
+    this.closed = true;
+    this.emit('close');
+  }
+}
+
+// Browsers send the page's Origin with every WebSocket handshake and leave the
+// check to the server; without it any open page could drive the local server.
+// Clients that send no Origin (CLI tools, tests) are not browsers and pass.
+function isSameOrigin(req) {
+  const origin = req.headers.origin;
+  if (origin === undefined) return true;
+
+  try {
+    return new URL(origin).host === (req.headers.host || '').toLowerCase();
+  } catch (error) {
+    return false;
+  }
+}
+
+function attachWebSocketServer(server, pathname, onConnection) {
+  server.on('upgrade', (req, socket) => {
+    const url = new URL(req.url, 'http://localhost');
+    const key = req.headers['sec-websocket-key'];
+
+    if (url.pathname !== pathname || !key || (req.headers.upgrade || '').toLowerCase() !== 'websocket') {
+      socket.end('HTTP/1.1 400 Bad Request\r\n\r\n');
+      return;
+    }
+
+    if (!isSameOrigin(req)) {
+      socket.end('HTTP/1.1 403 Forbidden\r\n\r\n');
+      return;
+    }
+
+    const accept = crypto.createHash('sha1').update(key + HANDSHAKE_GUID).digest('base64');
+    socket.write(
+      'HTTP/1.1 101 Switching Protocols\r\n' +
+      'Upgrade: websocket\r\n' +
+      'Connection: Upgrade\r\n' +
+      `Sec-WebSocket-Accept: ${accept}\r\n\r\n`
+    );
+
+    onConnection(new WebSocketConnection(socket), req);
+  });
+}
+
+module.exports = { attachWebSocketServer, WebSocketConnection };
@@ -0,0 +1,170 @@
+const Calibrator = require('../src/calibration');
+const TDigest = require('../src/tdigest');
+const CodeSmellDetector = require('../src/detector');
+const fs = require('fs');
+const path = require('path');
+
+describe('TDigest', () => {
+  // Deterministic shuffle so insertion order is not sorted
+  const shuffled = count => {
+    const values = Array.from({ length: count }, (_, i) => i + 1);
+    let seed = 7;
+    for (let i = values.length - 1; i > 0; i--) {
+      seed = (seed * 1103515245 + 12345) % 2147483648;
+      const j = seed % (i + 1);
+      [values[i], values[j]] = [values[j], values[i]];
+    }
+    return values;
+  };
+
+  test('should estimate quantiles of a uniform stream within a small error', () => {
+    const digest = new TDigest();
+    shuffled(10000).forEach(value => digest.add(value));
+
+    expect(Math.abs(digest.quantile(0.5) - 5000)).toBeLessThan(100);
+    expect(Math.abs(digest.quantile(0.95) - 9500)).toBeLessThan(30);
+    expect(Math.abs(digest.quantile(0.99) - 9900)).toBeLessThan(10);
+    expect(digest.quantile(0)).toBe(1);
+    expect(digest.quantile(1)).toBe(10000);
+  });
+
+  test('should keep its size bounded by the compression factor', () => {
+    const digest = new TDigest(50);
+    shuffled(20000).forEach(value => digest.add(value));
+
+    expect(digest.toJSON().centroids.length).toBeLessThan(100);
+    expect(digest.count).toBe(20000);
+  });
+
+  test('should not grow with the sample count past the top tail', () => {
+    const sizeAfter = count => {
+      const digest = new TDigest(100);
+      for (let i = 0; i < count; i++) digest.add((i * 7919) % count);
+      return digest.toJSON().centroids.length;
+    };
+
+    const small = sizeAfter(10000);
+    const large = sizeAfter(300000);
+
+    expect(large).toBeLessThanOrEqual(100);
+    expect(large - small).toBeLessThanOrEqual(10);
+  });
+
+  test('should merge into the same distribution as one stream', () => {
+    const values = shuffled(4000);
+    const whole = new TDigest();
+    const left = new TDigest();
+    const right = new TDigest();
+    values.forEach((value, i) => {
+      whole.add(value);
+      (i % 2 === 0 ? left : right).add(value);
+    });
+
+    left.merge(right);
+
+    expect(left.count).toBe(4000);
+    expect(Math.abs(left.quantile(0.95) - whole.quantile(0.95))).toBeLessThan(20);
+    expect(left.quantile(1)).toBe(4000);
+  });
+
+  test('should survive a JSON round trip', () => {
+    const digest = new TDigest();
+    shuffled(1000).forEach(value => digest.add(value));
+
+    const restored = TDigest.fromJSON(JSON.parse(JSON.stringify(digest.toJSON())));
+
+    expect(restored.count).toBe(1000);
+    expect(restored.quantile(0.9)).toBeCloseTo(digest.quantile(0.9));
+  });
+
+  test('should return null for an empty sketch', () => {
+    expect(new TDigest().quantile(0.5)).toBeNull();
+  });
+});
+
+describe('Calibrator', () => {
+  const tempDir = path.join(__dirname, 'temp-calibration');
+  const detector = new CodeSmellDetector({ smells: {}, thresholds: {} });
+
+  // One method of each length from 1 to count body lines
+  const javaSource = count => {
+    const methods = Array.from({ length: count }, (_, i) => {
+      const body = Array.from({ length: i + 1 }, () => '        t++;').join('\n');
+      return `    public int method${i}(int a, int b) {\n${body}\n        return t;\n    }`;
+    });
+    return `public class Sample {\n    private int t;\n${methods.join('\n')}\n}\n`;
+  };
+
+  afterEach(() => {
+    fs.rmSync(tempDir, { recursive: true, force: true });
+  });
+
+  test('should derive thresholds from percentiles of observed metrics', () => {
+    const calibrator = new Calibrator();
+    calibrator.observe(detector.parseFile(javaSource(100), '.java'));
+
+    const thresholds = calibrator.thresholds();
+
+    // Methods span 4 to 103 lines; the longest 5% lie above the threshold
+    expect(thresholds.LongMethod).toBeGreaterThanOrEqual(97);
+    expect(thresholds.LongMethod).toBeLessThanOrEqual(99);
+    expect(thresholds.LargeParameterList).toBe(2);
+    expect(thresholds.GodClassMethods).toBe(100);
+    expect(calibrator.sketches.methodLength.count).toBe(100);
+  });
+
+  test('should use configured percentiles', () => {
+    const calibrator = new Calibrator();
+    calibrator.observe(detector.parseFile(javaSource(100), '.java'));
+
+    const thresholds = calibrator.thresholds({ LongMethod: 50 });
+
+    expect(Math.abs(thresholds.LongMethod - 54)).toBeLessThanOrEqual(1);
+  });
+
+  test('should record each function\'s similarity to its closest sibling', () => {
+    const body = '        int x = load();\n        x += 1;\n        save(x);\n        log(x);\n        return x;';
+    const source = [
+      'public class Twins {',
+      `    public int first() {\n${body}\n    }`,
+      `    public int second() {\n${body}\n    }`,
+      `    public String other() {\n        String s = "a";\n        s = s.trim();\n        s = s.toUpperCase();\n        return s + s;\n    }`,
+      '}'
+    ].join('\n');
+
+    const similarities = new Calibrator().nearestSimilarities(detector.parseFile(source, '.java').functions);
+
+    expect(similarities).toHaveLength(3);
+    expect(similarities[0]).toBeGreaterThan(0.9);
+    expect(similarities[1]).toBeGreaterThan(0.9);
+    expect(similarities[2]).toBeLessThan(similarities[0]);
+  });
+
+  test('should not lower the similarity threshold below the floor', () => {
+    const calibrator = new Calibrator();
+    [0.1, 0.2, 0.3].forEach(value => calibrator.sketches.duplicateSimilarity.add(value));
+
+    expect(calibrator.thresholds().DuplicatedCodeSimilarity).toBe(0.5);
+  });
+
+  test('should save, load and merge sketches across runs', () => {
+    fs.mkdirSync(tempDir, { recursive: true });
+    const first = new Calibrator();
+    first.observe(detector.parseFile(javaSource(50), '.java'));
+    first.save(path.join(tempDir, 'first.json'));
+
+    const second = new Calibrator();
+    second.observe(detector.parseFile(javaSource(30), '.java'));
+
+    const merged = Calibrator.load(path.join(tempDir, 'first.json')).merge(second);
+
+    expect(merged.files).toBe(2);
+    expect(merged.sketches.methodLength.count).toBe(80);
+    expect(merged.sketches.classMethods.count).toBe(2);
+    expect(merged.summary().methodLength.max).toBe(53);
+  });
+
+  test('should reject sketches from another format version', () => {
+    expect(() => Calibrator.fromJSON({ version: 99, sketches: {} })).toThrow();
+  });
+});
@@ -0,0 +1,70 @@
+const { measureCohesion, memberReferences } = require('../src/cohesion');
+
+describe('measureCohesion', () => {
+  test('should count connected components over shared fields and calls', () => {
+    const methods = [
+      { name: 'open', body: 'void open() { connection = create(); }' },
+      { name: 'create', body: 'Connection create() { return new Connection(url); }' },
+      { name: 'render', body: 'String render() { return template.apply(this.title); }' },
+      { name: 'log', body: 'void log() { System.out.println("connection"); }' }
+    ];
+
+    const result = measureCohesion(methods, ['connection', 'url', 'template', 'title'], 'java');
+
+    expect(result.lcom4).toBe(3);
+    expect(result.components).toEqual([['open', 'create'], ['render'], ['log']]);
+    expect(result.tcc).toBe(0);
+  });
+
+  test('should compute TCC from pairs sharing a field', () => {
+    const methods = [
+      { name: 'a', body: 'def a(self):\n    return self.x' },
+      { name: 'b', body: 'def b(self):\n    return self.x + self.y' },
+      { name: 'c', body: 'def c(self):\n    return self.y' }
+    ];
+
+    const result = measureCohesion(methods, ['x', 'y'], 'python');
+
+    expect(result.lcom4).toBe(1);
+    expect(result.tcc).toBeCloseTo(2 / 3);
+  });
+
+  test('should handle classes with more fields than fit in one bitset word', () => {
+    const fields = Array.from({ length: 100 }, (_, i) => `f${i}`);
+    const methods = [
+      { name: 'first', body: 'int first() { return f99; }' },
+      { name: 'second', body: 'int second() { return f99 + f40; }' },
+      { name: 'third', body: 'int third() { return f0; }' }
+    ];
+
+    const result = measureCohesion(methods, fields, 'java');
+
+    expect(result.lcom4).toBe(2);
+    expect(result.tcc).toBeCloseTo(1 / 3);
+  });
+
+  test('should ignore members of other objects, strings and comments', () => {
+    const names = memberReferences('void f() { other.count = 1; // count\n log("count"); this.total++; }', 'java')
+      .map(reference => reference.name);
+
+    expect(names).not.toContain('count');
+    expect(names).toContain('total');
+  });
+
+  test('should not count parameters and locals that shadow a field', () => {
+    const references = body => memberReferences(body, 'java').map(reference => reference.name);
+
+    expect(references('void reset() { int count = 0; count++; }')).not.toContain('count');
+    expect(references('void setCount(int count) { this.count = count; }').filter(name => name === 'count')).toHaveLength(1);
+    expect(references('void sum(List<Item> items) { for (Item total : items) log(total); }')).not.toContain('total');
+    expect(references('int next() { return count + 1; }')).toContain('count');
+
+    // A shadowing local must not tie otherwise unrelated methods together
+    const methods = [
+      { name: 'add', body: 'void add(int n) { total += n; }' },
+      { name: 'format', body: 'String format() { String total = prefix + "x"; return total; }' },
+      { name: 'label', body: 'String label() { return prefix; }' }
+    ];
+    expect(measureCohesion(methods, ['total', 'prefix'], 'java').lcom4).toBe(2);
+  });
+});
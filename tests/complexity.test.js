@@ -0,0 +1,113 @@
+const CodeSmellDetector = require('../src/detector');
+
+describe('function complexity metrics', () => {
+  const detector = new CodeSmellDetector({
+    smells: {},
+    thresholds: {},
+    analysis: { ignoreComments: true, ignoreEmptyLines: true }
+  });
+
+  const metricsOf = func => ({
+    logicalLines: func.logicalLines,
+    cyclomaticComplexity: func.cyclomaticComplexity,
+    cognitiveComplexity: func.cognitiveComplexity,
+    maxNesting: func.maxNesting
+  });
+
+  test('should measure Java methods during extraction', () => {
+    const javaCode = `public class Sample {
+    public int score(int a, List<? extends Item> items) {
+        // line comment
+        /* block
+           comment */
+        int result = a > 0 ? 1 : 2;
+
+        if (a > 0 && a < 10 || a == 42) {
+            for (Item item : items) {
+                if (item.valid()) {
+                    result++;
+                }
+            }
+        }
+        String text = "if while for";
+        switch (a) {
+            case 1: result = 2; break;
+            case 2: result = 3; break;
+        }
+        try { result++; } catch (Exception e) { result = 0; }
+        return result;
+    }
+}`;
+
+    const [func] = detector.extractFunctions(javaCode, '.java');
+
+    expect(func.lineCount).toBe(21);
+    expect(metricsOf(func)).toEqual({
+      logicalLines: 17,
+      // ternary, if, &&, ||, for, if, 2 cases, catch
+      cyclomaticComplexity: 10,
+      // ternary 1, if 1, && || 2, for 2, nested if 3, switch 1, catch 1
+      cognitiveComplexity: 11,
+      maxNesting: 3
+    });
+  });
+
+  test('should measure Python functions by indentation', () => {
+    const pythonCode = `def process(items, strict):
+    """Docstring
+    spanning lines."""
+    # comment
+
+    total = 0 if strict else 1
+    for item in items:
+        if item and strict:
+            total += 1
+        elif item:
+            total += 2
+        else:
+            total -= 1
+    return total
+`;
+
+    const [func] = detector.extractFunctions(pythonCode, '.py');
+
+    expect(metricsOf(func)).toEqual({
+      logicalLines: 10,
+      // conditional expression, for, if, and, elif
+      cyclomaticComplexity: 6,
+      // conditional 1, for 1, nested if 2, and 1, elif 1, else 1
+      cognitiveComplexity: 7,
+      maxNesting: 2
+    });
+  });
+
+  test('should keep blank and comment lines when the config does not ignore them', () => {
+    const rawDetector = new CodeSmellDetector({ smells: {}, thresholds: {} });
+    const pythonCode = 'def f():\n    # note\n\n    return 1\n';
+
+    const [func] = rawDetector.extractFunctions(pythonCode, '.py');
+
+    expect(func.logicalLines).toBe(func.lineCount);
+  });
+
+  test('should let LongMethod flag short but complex methods', async () => {
+    const complexDetector = new CodeSmellDetector({
+      smells: { LongMethod: true },
+      thresholds: { LongMethod: 40, LongMethodCyclomatic: 3, LongMethodCognitive: 100 }
+    });
+    const javaCode = `public class Branchy {
+    public int pick(int a) {
+        if (a == 1) return 1;
+        if (a == 2) return 2;
+        if (a == 3) return 3;
+        return 0;
+    }
+}`;
+
+    const result = await complexDetector.analyzeContent(javaCode, 'Branchy.java');
+
+    expect(result.detected).toHaveLength(1);
+    expect(result.detected[0].cyclomaticComplexity).toBe(4);
+    expect(result.detected[0].description).toContain('cyclomatic complexity 4 (threshold: 3)');
+  });
+});
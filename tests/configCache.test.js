@@ -0,0 +1,73 @@
+const { loadCachedConfig } = require('../src/configCache');
+const fs = require('fs');
+const path = require('path');
+
+describe('loadCachedConfig', () => {
+  const tempDir = path.join(__dirname, 'temp-config');
+  const configPath = path.join(tempDir, 'config.yaml');
+  const cacheFile = path.join(tempDir, 'cache', 'config.json');
+
+  // Stand-in for the YAML parser that counts how often it runs
+  let parseCalls;
+  const parse = content => {
+    parseCalls++;
+    return { threshold: parseInt(content.split(':')[1], 10) };
+  };
+
+  beforeEach(() => {
+    parseCalls = 0;
+    fs.mkdirSync(tempDir, { recursive: true });
+    fs.writeFileSync(configPath, 'threshold: 40\n');
+  });
+
+  afterEach(() => {
+    fs.rmSync(tempDir, { recursive: true, force: true });
+  });
+
+  test('should parse once and serve later loads from the cache', () => {
+    expect(loadCachedConfig(configPath, parse, cacheFile)).toEqual({ threshold: 40 });
+    expect(loadCachedConfig(configPath, parse, cacheFile)).toEqual({ threshold: 40 });
+    expect(parseCalls).toBe(1);
+  });
+
+  test('should re-parse when the config file changes', () => {
+    loadCachedConfig(configPath, parse, cacheFile);
+
+    fs.writeFileSync(configPath, 'threshold: 120\n');
+    const later = new Date(Date.now() + 5000);
+    fs.utimesSync(configPath, later, later);
+
+    expect(loadCachedConfig(configPath, parse, cacheFile)).toEqual({ threshold: 120 });
+    expect(parseCalls).toBe(2);
+  });
+
+  test('should ignore a corrupt cache file', () => {
+    fs.mkdirSync(path.dirname(cacheFile), { recursive: true });
+    fs.writeFileSync(cacheFile, '{not json');
+
+    expect(loadCachedConfig(configPath, parse, cacheFile)).toEqual({ threshold: 40 });
+    expect(parseCalls).toBe(1);
+  });
+
+  test('should not trust entries in a directory other users can write to', () => {
+    const sharedDir = path.dirname(cacheFile);
+    fs.mkdirSync(sharedDir, { recursive: true });
+    fs.chmodSync(sharedDir, 0o777);
+    const stat = fs.statSync(configPath);
+    // What another local user could plant: a valid entry with different settings
+    fs.writeFileSync(cacheFile, JSON.stringify({ version: 1, size: stat.size, mtimeMs: stat.mtimeMs, config: { threshold: 9999 } }));
+
+    expect(loadCachedConfig(configPath, parse, cacheFile)).toEqual({ threshold: 40 });
+    expect(parseCalls).toBe(1);
+  });
+
+  test('should keep its cache in a private per-user directory', () => {
+    const { cacheFileFor } = require('../src/configCache');
+    const file = cacheFileFor(configPath);
+
+    expect(path.basename(path.dirname(file))).toMatch(/^code-smell-detector-/);
+    if (process.platform !== 'win32') {
+      expect(fs.statSync(path.dirname(file)).mode & 0o077).toBe(0);
+    }
+  });
+});
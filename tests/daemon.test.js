@@ -0,0 +1,109 @@
+const { AnalysisDaemon, analyzeViaDaemon, sendRequest } = require('../src/daemon');
+const CodeSmellDetector = require('../src/detector');
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+
+describe('AnalysisDaemon', () => {
+  const tempDir = path.join(__dirname, 'temp-daemon');
+  const configPath = path.join(tempDir, 'config.json');
+  const filePath = path.join(tempDir, 'Sample.java');
+  // Unix socket paths are length-limited, so use the short system temp dir
+  const socketPath = process.platform === 'win32'
+    ? `\\\\.\\pipe\\code-smell-daemon-test-${process.pid}`
+    : path.join(os.tmpdir(), `code-smell-daemon-test-${process.pid}.sock`);
+
+  const config = {
+    smells: { LongMethod: true, MagicNumbers: true, GodClass: false },
+    thresholds: { LongMethod: 3 },
+    output: { format: 'json', verboseMode: false }
+  };
+
+  const code = `
+public class Sample {
+    public int compute(int value) {
+        int a = value * 42;
+        int b = a + 17;
+        int c = b - 3;
+        return c;
+    }
+}
+`;
+
+  let daemon;
+  let loads;
+
+  beforeEach(async () => {
+    loads = 0;
+    fs.mkdirSync(tempDir, { recursive: true });
+    fs.writeFileSync(configPath, JSON.stringify(config));
+    fs.writeFileSync(filePath, code);
+
+    daemon = new AnalysisDaemon({
+      socketPath,
+      loadConfig: file => {
+        loads++;
+        return JSON.parse(fs.readFileSync(file, 'utf8'));
+      },
+      applyOverrides: (loaded, overrides) => {
+        if (overrides.exclude) loaded.smells[overrides.exclude] = false;
+        return loaded;
+      }
+    });
+    await daemon.start();
+  });
+
+  afterEach(async () => {
+    await daemon.stop();
+    fs.rmSync(tempDir, { recursive: true, force: true });
+  });
+
+  test('should return the same result as in-process analysis', async () => {
+    const expected = await new CodeSmellDetector(config).analyze(filePath);
+    const result = await analyzeViaDaemon(filePath, configPath, {}, socketPath);
+
+    expect(result).toEqual(expected);
+  });
+
+  test('should keep config and detectors resident across requests', async () => {
+    await analyzeViaDaemon(filePath, configPath, {}, socketPath);
+    await analyzeViaDaemon(filePath, configPath, {}, socketPath);
+    const excluded = await analyzeViaDaemon(filePath, configPath, { exclude: 'MagicNumbers' }, socketPath);
+
+    expect(loads).toBe(1);
+    expect(daemon.detectors.size).toBe(2);
+    expect(excluded.activeSmells).toEqual(['LongMethod']);
+  });
+
+  test('should reload the config when it changes on disk', async () => {
+    await analyzeViaDaemon(filePath, configPath, {}, socketPath);
+
+    fs.writeFileSync(configPath, JSON.stringify({ ...config, thresholds: { LongMethod: 100 } }));
+    const later = new Date(Date.now() + 5000);
+    fs.utimesSync(configPath, later, later);
+
+    const result = await analyzeViaDaemon(filePath, configPath, {}, socketPath);
+    expect(loads).toBe(2);
+    expect(result.detected.some(smell => smell.type === 'LongMethod')).toBe(false);
+  });
+
+  test('should signal a fallback when the request cannot be served', async () => {
+    const missingConfig = await analyzeViaDaemon(filePath, path.join(tempDir, 'missing.yaml'), {}, socketPath);
+    expect(missingConfig).toBeNull();
+
+    const wrongVersion = await sendRequest(socketPath, { type: 'ping', version: 0 });
+    expect(wrongVersion.ok).toBe(false);
+  });
+
+  test('should create the socket accessible to its owner only', () => {
+    if (process.platform === 'win32') return;
+    expect(fs.statSync(socketPath).mode & 0o777).toBe(0o600);
+  });
+
+  test('should resolve null when no daemon is listening', async () => {
+    await daemon.stop();
+
+    expect(await sendRequest(socketPath, { type: 'ping' })).toBeNull();
+    expect(await analyzeViaDaemon(filePath, configPath, {}, socketPath)).toBeNull();
+  });
+});
@@ -208,6 +208,37 @@ public class Test {
     });
   });
 
+  describe('analyzeStream', () => {
+    const javaCode = fs.readFileSync(path.join(__dirname, '..', 'samples', 'SmellySample.java'), 'utf8');
+
+    test('should yield cheap analyzers first and duplication last', async () => {
+      const smellTypes = [];
+      for await (const { smellType } of detector.analyzeStream(javaCode, 'SmellySample.java')) {
+        smellTypes.push(smellType);
+      }
+
+      expect(smellTypes).toEqual(['MagicNumbers', 'LargeParameterList', 'LongMethod', 'GodClass', 'FeatureEnvy', 'DuplicatedCode']);
+    });
+
+    test('should add up to the same report as analyzeContent', async () => {
+      const batches = new Map();
+      for await (const { smellType, smells } of detector.analyzeStream(javaCode, 'SmellySample.java')) {
+        batches.set(smellType, smells);
+      }
+      const expected = await detector.analyzeContent(javaCode, 'SmellySample.java');
+
+      const streamed = detector.buildResult(Object.keys(detector.analyzers).map(type => [type, batches.get(type)]), javaCode, 'SmellySample.java');
+
+      expect(streamed).toEqual(expected);
+    });
+
+    test('should reject unsupported file types before any analyzer runs', async () => {
+      const stream = detector.analyzeStream('text', 'notes.txt');
+
+      await expect(stream.next()).rejects.toThrow('Unsupported file type');
+    });
+  });
+
   describe('extractFunctions', () => {
     test('should extract Python functions with parameters', () => {
       const pythonCode = `
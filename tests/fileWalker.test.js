@@ -0,0 +1,103 @@
+const FileWalker = require('../src/fileWalker');
+const fs = require('fs');
+const path = require('path');
+
+describe('FileWalker', () => {
+  const tempDir = path.join(__dirname, 'temp-walker');
+
+  const writeFile = (relativePath, content = 'class Sample {}\n') => {
+    const fullPath = path.join(tempDir, relativePath);
+    fs.mkdirSync(path.dirname(fullPath), { recursive: true });
+    fs.writeFileSync(fullPath, content);
+  };
+
+  const relativeFiles = files => files.map(file => path.relative(tempDir, file).split(path.sep).join('/')).sort();
+
+  beforeEach(() => {
+    writeFile('src/main/Order.java');
+    writeFile('src/main/utils.py', 'def helper():\n    pass\n');
+    writeFile('target/generated/Stub.java');
+    writeFile('node_modules/pkg/script.py');
+    writeFile('.git/hooks/hook.py');
+    writeFile('README.md', '# not source');
+  });
+
+  afterEach(() => {
+    fs.rmSync(tempDir, { recursive: true, force: true });
+  });
+
+  test('should find source files and prune excluded directories', async () => {
+    const walker = new FileWalker(tempDir, {
+      include: ['**/*.java', '**/*.py'],
+      exclude: ['**/node_modules/**', '**/target/**']
+    });
+
+    const files = await walker.collect();
+
+    expect(relativeFiles(files)).toEqual(['src/main/Order.java', 'src/main/utils.py']);
+    expect(walker.stats.ignored).toBe(3); // target, node_modules, .git
+  });
+
+  test('should honor .gitignore rules including negation', async () => {
+    writeFile('.gitignore', 'src/main/*.py\n!src/main/keep.py\nlogs/\n');
+    writeFile('src/main/keep.py');
+    writeFile('logs/debug.py');
+
+    const walker = new FileWalker(tempDir, { exclude: ['**/node_modules/**', '**/target/**'] });
+    const files = await walker.collect();
+
+    expect(relativeFiles(files)).toEqual(['src/main/Order.java', 'src/main/keep.py']);
+  });
+
+  test('should skip generated sources by header sniffing', async () => {
+    writeFile('src/gen/Message.java', '// Generated by the protocol buffer compiler.  DO NOT EDIT!\nclass Message {}\n');
+    writeFile('src/gen/Bound.java', '@javax.annotation.Generated("jaxb")\nclass Bound {}\n');
+
+    const walker = new FileWalker(tempDir, { exclude: ['**/node_modules/**', '**/target/**'] });
+    const files = await walker.collect();
+
+    expect(relativeFiles(files)).toEqual(['src/main/Order.java', 'src/main/utils.py']);
+    expect(walker.stats.generated).toBe(2);
+  });
+
+  test('should only take markers from the header, case-sensitively', () => {
+    const isGenerated = FileWalker.isGeneratedContent;
+
+    expect(isGenerated('package a;\n\nimport b.C;\n/*\n * Code generated by protoc\n */\nclass M {}\n')).toBe(true);
+    expect(isGenerated('import javax.annotation.Generated;\n\n@Generated("tool")\npublic class M {}\n')).toBe(true);
+    // Hand-written files mentioning the phrases after the header, or in lower case
+    expect(isGenerated('public class M {\n    // do not edit without asking Ana\n}\n')).toBe(false);
+    expect(isGenerated('public class M {\n    String s = "Code generated by hand";\n}\n')).toBe(false);
+    expect(isGenerated('/**\n * Builds reports. @generated\n */\npublic class M {}\n')).toBe(false);
+    expect(isGenerated('# do not edit: tuned by hand\ndef f():\n    return 1\n')).toBe(false);
+    expect(isGenerated('public class M {}\n// DO NOT EDIT\n')).toBe(false);
+  });
+
+  test('should list the generated files it skips', async () => {
+    writeFile('src/gen/Message.java', '// Generated by the protocol buffer compiler.  DO NOT EDIT!\nclass Message {}\n');
+
+    const walker = new FileWalker(tempDir, { exclude: ['**/node_modules/**', '**/target/**'] });
+    await walker.collect();
+
+    expect(walker.generatedFiles.map(file => path.relative(tempDir, file).split(path.sep).join('/'))).toEqual(['src/gen/Message.java']);
+  });
+
+  test('should analyze generated sources when skipping is disabled', async () => {
+    writeFile('src/gen/Message.java', '// Generated by the protocol buffer compiler.\nclass Message {}\n');
+
+    const walker = new FileWalker(tempDir, {
+      exclude: ['**/node_modules/**', '**/target/**'],
+      skipGenerated: false
+    });
+    const files = await walker.collect();
+
+    expect(relativeFiles(files)).toContain('src/gen/Message.java');
+  });
+
+  test('should translate globs to anchored regular expressions', () => {
+    expect(FileWalker.globToRegExp('**/*.java').test('Order.java')).toBe(true);
+    expect(FileWalker.globToRegExp('**/*.java').test('a/b/Order.java')).toBe(true);
+    expect(FileWalker.globToRegExp('src/*.py').test('src/a/b.py')).toBe(false);
+    expect(FileWalker.globToRegExp('**/target/**').test('module/target/')).toBe(true);
+  });
+});
@@ -0,0 +1,83 @@
+const HistorySweep = require('../src/gitHistory');
+const { execFileSync } = require('child_process');
+const fs = require('fs');
+const path = require('path');
+
+describe('HistorySweep', () => {
+  const tempDir = path.join(__dirname, 'temp-history');
+
+  const config = {
+    smells: { LongMethod: false, MagicNumbers: true },
+    thresholds: {}
+  };
+
+  const git = (...args) => execFileSync('git', ['-c', 'user.name=Test', '-c', 'user.email=test@example.com', ...args], {
+    cwd: tempDir,
+    encoding: 'utf8'
+  });
+
+  const commit = (message, files, removed = []) => {
+    for (const [relativePath, content] of Object.entries(files)) {
+      const fullPath = path.join(tempDir, relativePath);
+      fs.mkdirSync(path.dirname(fullPath), { recursive: true });
+      fs.writeFileSync(fullPath, content);
+    }
+    removed.forEach(relativePath => git('rm', '-q', relativePath));
+    git('add', '-A');
+    git('commit', '-q', '--allow-empty', '-m', message);
+  };
+
+  const clean = 'public class Clean {\n    int size() { return 0; }\n}\n';
+  const magic = 'public class Magic {\n    int rate() { return 42 * 17; }\n}\n';
+
+  beforeEach(() => {
+    fs.mkdirSync(tempDir, { recursive: true });
+    git('init', '-q');
+
+    commit('first', { 'src/Clean.java': clean, 'src/Copy.java': clean, 'notes.txt': 'ignored' });
+    commit('second', { 'src/Magic.java': magic });
+    commit('third', { 'src/Clean.java': magic }, ['src/Copy.java']);
+  });
+
+  afterEach(() => {
+    fs.rmSync(tempDir, { recursive: true, force: true });
+  });
+
+  test('should report per-commit totals oldest first', async () => {
+    const report = await new HistorySweep(tempDir, config).run();
+
+    expect(report.history.map(entry => entry.subject)).toEqual(['first', 'second', 'third']);
+    expect(report.history.map(entry => entry.files)).toEqual([2, 3, 2]);
+    expect(report.history.map(entry => entry.totalSmells)).toEqual([0, 1, 2]);
+    expect(report.history[2].byType.MagicNumbers).toBe(2);
+  });
+
+  test('should analyze each distinct blob once', async () => {
+    const report = await new HistorySweep(tempDir, config).run();
+
+    // clean and magic are the only two file contents ever committed
+    expect(report.uniqueBlobs).toBe(2);
+    expect(report.analyzedBlobs).toBe(2);
+    expect(report.fileVersions).toBe(7);
+  });
+
+  test('should list per-file deltas against the previous commit', async () => {
+    const report = await new HistorySweep(tempDir, config).run();
+    const changes = report.history[2].changes.sort((a, b) => a.path.localeCompare(b.path));
+
+    expect(changes).toEqual([
+      { path: 'src/Clean.java', status: 'modified', smellsBefore: 0, smellsAfter: 1, delta: 1, byType: { MagicNumbers: 1 } },
+      { path: 'src/Copy.java', status: 'deleted', smellsBefore: 0, smellsAfter: 0, delta: 0, byType: {} }
+    ]);
+  });
+
+  test('should respect the commit limit and exclude rules', async () => {
+    const report = await new HistorySweep(tempDir, config, {
+      limit: 2,
+      fileRules: { exclude: ['**/Magic.java'] }
+    }).run();
+
+    expect(report.history.map(entry => entry.subject)).toEqual(['second', 'third']);
+    expect(report.history.map(entry => entry.totalSmells)).toEqual([0, 1]);
+  });
+});
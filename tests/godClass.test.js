@@ -142,4 +142,58 @@ describe('GodClassAnalyzer', () => {
       fieldThreshold: 8
     });
   });
-});
\ No newline at end of file
+
+  test('should flag small classes that split into unrelated method groups', async () => {
+    const CodeSmellDetector = require('../src/detector');
+    const code = `
+public class Toolbox {
+    private int count;
+    private String label;
+    private double rate;
+
+    public void increment() {
+        count = count + 1;
+    }
+
+    public void reset() {
+        count = 0;
+    }
+
+    public String describe() {
+        return label.trim();
+    }
+
+    public double scaled(double value) {
+        return value * rate;
+    }
+}
+`;
+    const parseResult = new CodeSmellDetector({ smells: {}, thresholds: {} }).parseFile(code, '.java');
+
+    const smells = await analyzer.analyze(parseResult, code, 'Toolbox.java');
+
+    expect(smells).toHaveLength(1);
+    expect(smells[0].lcom4).toBe(3);
+    expect(smells[0].description).toContain('3 unrelated method groups');
+    expect(smells[0].methodGroups).toEqual([['increment', 'reset'], ['describe'], ['scaled']]);
+  });
+
+  test('should report cohesion with size-based violations', async () => {
+    const CodeSmellDetector = require('../src/detector');
+    const methods = ['a', 'b', 'c', 'd', 'e', 'f'].map(name => `
+    public int ${name}() {
+        return total + count;
+    }`).join('\n');
+    const code = `public class Counter {\n    private int total;\n    private int count;\n${methods}\n}\n`;
+    const parseResult = new CodeSmellDetector({ smells: {}, thresholds: {} }).parseFile(code, '.java');
+
+    const smells = await analyzer.analyze(parseResult, code, 'Counter.java');
+
+    expect(smells).toHaveLength(1);
+    expect(smells[0].lcom4).toBe(1);
+    expect(smells[0].tcc).toBe(1);
+    expect(smells[0].details).toContain('LCOM4 = 1, TCC = 1.00');
+    // 6/5 methods would be 'low' anyway; cohesive classes never go below it
+    expect(smells[0].severity).toBe('low');
+  });
+});
@@ -0,0 +1,108 @@
+const LiveAnalysisSession = require('../src/web/liveSession');
+
+describe('LiveAnalysisSession', () => {
+  const config = {
+    smells: {
+      LongMethod: true,
+      GodClass: false,
+      DuplicatedCode: false,
+      LargeParameterList: true,
+      MagicNumbers: true,
+      FeatureEnvy: false
+    },
+    thresholds: {
+      LongMethod: 4,
+      LargeParameterList: 2
+    }
+  };
+
+  const pythonCode = `
+def short_function(a):
+    return a
+
+def long_function(a, b, c):
+    x = a + b
+    y = x * c
+    z = y - a
+    return z
+
+def another_function():
+    return 42
+`;
+
+  const key = smell => `${smell.type}|${smell.lines}|${smell.description}`;
+
+  // Replays deltas the way the browser does and compares with a fresh analysis
+  async function expectMatchesFullAnalysis(session, smells) {
+    const fresh = new LiveAnalysisSession(config, 'python');
+    const expected = (await fresh.open(session.content())).map(key).sort();
+    expect([...smells.values()].map(key).sort()).toEqual(expected);
+  }
+
+  function applyDelta(smells, delta) {
+    delta.removed.forEach(id => smells.delete(id));
+    for (const smell of smells.values()) {
+      smell.lines = LiveAnalysisSession.shiftLines(smell.lines, delta.shift.fromLine, delta.shift.delta);
+    }
+    delta.added.forEach(smell => smells.set(smell.id, { ...smell }));
+  }
+
+  test('should report the same smells as a full analysis on open', async () => {
+    const session = new LiveAnalysisSession(config, 'python');
+    const smells = await session.open(pythonCode);
+
+    expect(smells.map(s => s.type)).toEqual(
+      expect.arrayContaining(['LongMethod', 'LargeParameterList', 'MagicNumbers'])
+    );
+    smells.forEach(smell => expect(smell.id).toBeDefined());
+  });
+
+  test('should only re-analyze the edited function', async () => {
+    const session = new LiveAnalysisSession(config, 'python');
+    const smells = new Map((await session.open(pythonCode)).map(s => [s.id, { ...s }]));
+
+    // Shorten long_function below the threshold
+    const delta = await session.applyEdit({ start: 6, deleteCount: 2, lines: [] });
+    applyDelta(smells, delta);
+
+    expect(delta.removed.length).toBeGreaterThan(0);
+    expect(delta.added.every(smell => smell.type !== 'MagicNumbers')).toBe(true);
+    expect([...smells.values()].some(s => s.type === 'LongMethod')).toBe(false);
+    await expectMatchesFullAnalysis(session, smells);
+  });
+
+  test('should shift smells below an inserted line', async () => {
+    const session = new LiveAnalysisSession(config, 'python');
+    const smells = new Map((await session.open(pythonCode)).map(s => [s.id, { ...s }]));
+
+    const delta = await session.applyEdit({ start: 0, deleteCount: 0, lines: ['import os', ''] });
+    applyDelta(smells, delta);
+
+    expect(delta.shift).toEqual({ fromLine: 1, delta: 2 });
+    await expectMatchesFullAnalysis(session, smells);
+  });
+
+  test('should detect smells introduced by an edit', async () => {
+    const session = new LiveAnalysisSession(config, 'python');
+    const smells = new Map((await session.open(pythonCode)).map(s => [s.id, { ...s }]));
+
+    const delta = await session.applyEdit({
+      start: 1,
+      deleteCount: 1,
+      lines: ['def short_function(a, b, c, d):']
+    });
+    applyDelta(smells, delta);
+
+    expect(delta.added).toEqual(
+      expect.arrayContaining([
+        expect.objectContaining({ type: 'LargeParameterList', functionName: 'short_function' })
+      ])
+    );
+    await expectMatchesFullAnalysis(session, smells);
+  });
+
+  test('shiftLines should move only lines at or after the edit', () => {
+    expect(LiveAnalysisSession.shiftLines('3-9, 12-20', 10, 5)).toBe('3-9, 17-25');
+    expect(LiveAnalysisSession.shiftLines('15', 10, -2)).toBe('13');
+  });
+});
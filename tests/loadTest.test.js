@@ -0,0 +1,92 @@
+const http = require('http');
+const { buildPayloads, percentile, summarize, checkSlo, runLoad } = require('../src/web/loadTest');
+
+describe('Load test harness', () => {
+  test('should compute nearest-rank percentiles', () => {
+    const sorted = Array.from({ length: 100 }, (_, i) => i + 1);
+
+    expect(percentile(sorted, 50)).toBe(50);
+    expect(percentile(sorted, 99)).toBe(99);
+    expect(percentile([7], 99)).toBe(7);
+    expect(percentile([], 50)).toBeNull();
+  });
+
+  test('should summarize latency, throughput and errors', () => {
+    const samples = [
+      { status: 200, latencyMs: 10 },
+      { status: 200, latencyMs: 30 },
+      { status: 500, latencyMs: 20 },
+      { status: 0, latencyMs: 40 }
+    ];
+
+    const summary = summarize(samples, 2000);
+
+    expect(summary.requests).toBe(4);
+    expect(summary.errors).toBe(2);
+    expect(summary.errorRate).toBe(0.5);
+    expect(summary.rps).toBe(2);
+    expect(summary.p50Ms).toBe(20);
+    expect(summary.maxMs).toBe(40);
+  });
+
+  test('should report every violated SLO limit', () => {
+    const overall = { requests: 10, errors: 1, errorRate: 0.1, rps: 5, p95Ms: 300, p99Ms: 900 };
+    const report = { overall, endpoints: { '/api/analyze-code': { ...overall, p95Ms: 250 } } };
+
+    const violations = checkSlo(report, {
+      overall: { p99Ms: 1000, errorRate: 0.05, minRps: 10 },
+      endpoints: { '/api/analyze-code': { p95Ms: 200 }, '/api/analyze-file': { p95Ms: 200 } }
+    });
+
+    expect(violations).toEqual([
+      'overall: errorRate 0.100 > 0.05',
+      'overall: 5.0 req/s < 10',
+      '/api/analyze-code: p95Ms 250.0 > 200',
+      '/api/analyze-file: no requests were sent'
+    ]);
+    expect(checkSlo(report, { overall: { p99Ms: 1000 } })).toEqual([]);
+  });
+
+  test('should fail every SLO when no request was sent', () => {
+    const empty = summarize([], 1000);
+
+    expect(checkSlo({ overall: empty, endpoints: {} }, { overall: { p99Ms: 1000 } }))
+      .toEqual(['overall: no requests completed']);
+  });
+
+  test('should measure open-loop latency from the scheduled send time', async () => {
+    // Answers one request at a time, 50 ms each, so arrivals faster than that queue up
+    let busyUntil = 0;
+    const server = http.createServer((req, res) => {
+      req.resume();
+      busyUntil = Math.max(Date.now(), busyUntil) + 50;
+      setTimeout(() => res.end('{}'), busyUntil - Date.now());
+    });
+    await new Promise(resolve => server.listen(0, '127.0.0.1', resolve));
+    const baseUrl = `http://127.0.0.1:${server.address().port}`;
+    const payloads = buildPayloads([{ name: 'a.py', language: 'python', code: 'x = 1' }], [1]);
+
+    try {
+      const closed = await runLoad({ baseUrl, payloads, concurrency: 1, requests: 10, fileRatio: 0 });
+      const open = await runLoad({ baseUrl, payloads, rate: 40, requests: 20, fileRatio: 0 });
+
+      // The closed loop only ever sees one 50 ms request; the open loop sees the queue
+      expect(closed.mode).toBe('closed');
+      expect(closed.overall.p99Ms).toBeLessThan(200);
+      expect(open.mode).toBe('open');
+      expect(open.overall.requests).toBe(20);
+      expect(open.overall.p99Ms).toBeGreaterThan(300);
+    } finally {
+      server.close();
+    }
+  });
+
+  test('should scale payloads by repeating the source', () => {
+    const sources = [{ name: 'a.py', language: 'python', code: 'x = 1' }];
+
+    const payloads = buildPayloads(sources, [1, 3]);
+
+    expect(payloads.map(payload => payload.name)).toEqual(['a.py', '3x a.py']);
+    expect(payloads[1].code.split('\n')).toHaveLength(3);
+  });
+});
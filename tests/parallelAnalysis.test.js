@@ -0,0 +1,91 @@
+const { splitRows, AnalysisPool } = require('../src/parallelAnalysis');
+const CodeSmellDetector = require('../src/detector');
+
+describe('Parallel analysis', () => {
+  const config = {
+    smells: {
+      LongMethod: true,
+      GodClass: true,
+      DuplicatedCode: true,
+      LargeParameterList: true,
+      MagicNumbers: true,
+      FeatureEnvy: true
+    },
+    thresholds: { LongMethod: 6, LargeParameterList: 3 }
+  };
+
+  const generateClass = methodCount => {
+    let code = 'public class Generated {\n';
+    for (let m = 0; m < methodCount; m++) {
+      code += `    public int method${m}(int a, int b, int c, int d) {\n`;
+      for (let k = 0; k < 6; k++) {
+        code += `        int v${k} = a * ${(m + k) % 4 + 3} + b - ${k};\n`;
+      }
+      code += '        return v1 + c;\n    }\n';
+    }
+    return `${code}}\n`;
+  };
+
+  const originalMinLines = CodeSmellDetector.PARALLEL_MIN_LINES;
+
+  beforeEach(() => {
+    CodeSmellDetector.PARALLEL_MIN_LINES = 10;
+  });
+
+  afterEach(() => {
+    CodeSmellDetector.PARALLEL_MIN_LINES = originalMinLines;
+  });
+
+  test('should produce the same smells in the same order as a serial run', async () => {
+    const code = generateClass(8);
+
+    const serial = await new CodeSmellDetector(config).analyzeContent(code, 'Generated.java');
+    const parallel = await new CodeSmellDetector(config, { jobs: 3 }).analyzeContent(code, 'Generated.java');
+
+    expect(serial.detected.length).toBeGreaterThan(0);
+    expect(parallel).toEqual(serial);
+  });
+
+  test('should post tasks without function or class bodies', async () => {
+    const code = generateClass(8);
+    const posted = [];
+    const originalRun = AnalysisPool.prototype.run;
+    AnalysisPool.prototype.run = function(job, task) {
+      posted.push(task);
+      return originalRun.call(this, job, task);
+    };
+
+    let parallel;
+    try {
+      parallel = await new CodeSmellDetector(config, { jobs: 3 }).analyzeContent(code, 'Generated.java');
+    } finally {
+      AnalysisPool.prototype.run = originalRun;
+    }
+
+    const serial = await new CodeSmellDetector(config).analyzeContent(code, 'Generated.java');
+    expect(parallel).toEqual(serial);
+    expect(posted.some(task => task.parse && task.parse.functions && task.parse.functions.length > 0)).toBe(true);
+    for (const task of posted) {
+      const records = task.parse ? [...(task.parse.functions || []), ...(task.parse.classes || [])] : [];
+      expect(records.filter(record => 'content' in record)).toEqual([]);
+    }
+  });
+
+  test('should fail the running task when its worker exits', async () => {
+    const pool = new AnalysisPool(1);
+    const job = { id: -1, source: new SharedArrayBuffer(0), filePath: 'Empty.java', language: 'java', config };
+    const pending = pool.run(job, { type: 'analyzer', smellType: 'MagicNumbers' });
+
+    const [worker] = pool.running.keys();
+    await worker.terminate();
+
+    await expect(pending).rejects.toThrow('exited');
+    expect(pool.workerCount).toBe(0);
+  });
+
+  test('should split rows into contiguous ranges of similar pairwise work', () => {
+    expect(splitRows(10, 3)).toEqual([[0, 2], [2, 5], [5, 10]]);
+    expect(splitRows(2, 4)).toEqual([[0, 1], [1, 2]]);
+    expect(splitRows(0, 4)).toEqual([]);
+  });
+});
@@ -0,0 +1,131 @@
+const { StratifiedSampler, createRandom } = require('../src/sampling');
+const path = require('path');
+
+describe('StratifiedSampler', () => {
+  const root = path.join('/repo');
+
+  const makeFiles = (count, dir, size) => Array.from({ length: count }, (_, i) => ({
+    path: path.join(root, dir, `File${i}.java`),
+    size
+  }));
+
+  const resultWith = (types, lines = 100) => ({
+    detected: types.map(type => ({ type })),
+    summary: { linesAnalyzed: lines }
+  });
+
+  test('should stratify by top-level directory and size', () => {
+    const files = [...makeFiles(10, 'core', 1000), ...makeFiles(5, 'core', 100000), ...makeFiles(5, 'web', 1000)];
+    const sampler = new StratifiedSampler(files, root, { seed: 1 });
+
+    expect(sampler.strata.size).toBe(3);
+    expect(sampler.population).toBe(20);
+  });
+
+  test('should allocate draws proportionally to stratum size', () => {
+    const files = [...makeFiles(30, 'core', 1000), ...makeFiles(10, 'web', 1000)];
+    const sampler = new StratifiedSampler(files, root, { seed: 7 });
+
+    const drawn = { core: 0, web: 0 };
+    for (let i = 0; i < 20; i++) {
+      const file = sampler.next();
+      drawn[file.stratum.split('|')[0]]++;
+      sampler.record(file, resultWith([]));
+    }
+
+    expect(drawn.core).toBe(15);
+    expect(drawn.web).toBe(5);
+  });
+
+  test('should give an exact estimate once every file is sampled', () => {
+    const files = [...makeFiles(4, 'core', 1000), ...makeFiles(3, 'web', 1000)];
+    const sampler = new StratifiedSampler(files, root, { seed: 3, smellTypes: ['LongMethod', 'MagicNumbers'] });
+
+    let file;
+    let i = 0;
+    while ((file = sampler.next()) !== null) {
+      sampler.record(file, resultWith(i++ % 2 === 0 ? ['LongMethod', 'MagicNumbers'] : ['MagicNumbers']));
+    }
+
+    const report = sampler.report();
+    expect(report.sampled).toBe(7);
+    expect(report.total.estimate).toBe(11);
+    expect(report.total.low).toBe(11);
+    expect(report.total.high).toBe(11);
+    expect(report.byType.LongMethod.estimate).toBe(4);
+    expect(report.byType.MagicNumbers.perFile).toBe(1);
+  });
+
+  test('should report an interval that narrows as more files are sampled', () => {
+    const files = makeFiles(500, 'core', 1000);
+    const sampler = new StratifiedSampler(files, root, { seed: 11, smellTypes: ['MagicNumbers'] });
+    const random = createRandom(5);
+    const draw = () => {
+      const file = sampler.next();
+      const count = Math.floor(random() * 5);
+      sampler.record(file, resultWith(Array(count).fill('MagicNumbers')));
+    };
+
+    for (let i = 0; i < 40; i++) draw();
+    const early = sampler.estimateTotal('total');
+    for (let i = 0; i < 200; i++) draw();
+    const late = sampler.estimateTotal('total');
+
+    expect(late.high - late.low).toBeLessThan(early.high - early.low);
+    expect(late.low).toBeLessThanOrEqual(1000);
+    expect(late.high).toBeGreaterThanOrEqual(1000);
+  });
+
+  test('should bound an all-zero sample by the rule of three instead of converging', () => {
+    const sampler = new StratifiedSampler(makeFiles(1000, 'core', 1000), root, { seed: 4 });
+    for (let i = 0; i < 100; i++) {
+      sampler.record(sampler.next(), resultWith([]));
+    }
+
+    // The bound is on files with any smell, reported apart from the smell total
+    const total = sampler.estimateTotal('total');
+    expect(total.estimate).toBe(0);
+    expect(total.high).toBe(0);
+    expect(total.filesPossiblyAffected).toBeCloseTo(900 * 3 / 100);
+    expect(total.relativeError).toBe(Infinity);
+    expect(sampler.isPrecise(0.5)).toBe(false);
+
+    // Once every file has been seen the zero is exact
+    let file;
+    while ((file = sampler.next()) !== null) sampler.record(file, resultWith([]));
+    expect(sampler.estimateTotal('total').filesPossiblyAffected).toBe(0);
+    expect(sampler.isPrecise(0.05)).toBe(true);
+  });
+
+  test('should give smells per KLOC a delta-method interval', () => {
+    const files = makeFiles(400, 'core', 1000);
+    const sampler = new StratifiedSampler(files, root, { seed: 9 });
+    const random = createRandom(13);
+    // Every file has 100 + 100 * u lines and about one smell per 50 lines: 20 per KLOC
+    const draw = () => {
+      const lines = 100 + Math.floor(random() * 100);
+      const smells = Math.round(lines / 50 + (random() - 0.5) * 2);
+      sampler.record(sampler.next(), resultWith(Array(smells).fill('LongMethod'), lines));
+    };
+
+    for (let i = 0; i < 60; i++) draw();
+    const partial = sampler.report().smellsPerKLOC;
+    expect(partial.low).toBeLessThan(partial.estimate);
+    expect(partial.high).toBeGreaterThan(partial.estimate);
+    expect(partial.low).toBeLessThan(20);
+    expect(partial.high).toBeGreaterThan(20);
+
+    for (let i = 60; i < 400; i++) draw();
+    const exact = sampler.report().smellsPerKLOC;
+    expect(exact.high - exact.low).toBeCloseTo(0);
+  });
+
+  test('should require a minimum sample before declaring precision', () => {
+    const sampler = new StratifiedSampler(makeFiles(100, 'core', 1000), root, { seed: 2 });
+    for (let i = 0; i < 5; i++) {
+      sampler.record(sampler.next(), resultWith(['LongMethod']));
+    }
+
+    expect(sampler.isPrecise(0.5)).toBe(false);
+  });
+});
@@ -0,0 +1,117 @@
+const SmellRules = require('../src/smellRules');
+const CodeSmellDetector = require('../src/detector');
+const DuplicatedCodeAnalyzer = require('../src/analyzers/duplicatedCode');
+
+describe('SmellRules', () => {
+  const allSmells = {
+    LongMethod: true,
+    GodClass: true,
+    DuplicatedCode: true,
+    LargeParameterList: true,
+    MagicNumbers: true,
+    FeatureEnvy: true
+  };
+
+  const body = Array.from({ length: 8 }, (_, i) => `        total += order.getItem(${i + 3}).getPrice() * rate;`).join('\n');
+  const javaCode = `public class Billing {
+    private double rate;
+    private Order order;
+    private Customer customer;
+
+    public double invoice(Order order, Customer customer, int a, int b, int c, int d) {
+        double total = 0;
+${body}
+        if (customer.isVip() && total > 500) {
+            total = total * 0.9;
+        }
+        return total;
+    }
+
+    public double quote(Order order) {
+        double total = 0;
+${body}
+        return total;
+    }
+
+    public String describe(Customer buyer) {
+        return buyer.getName() + buyer.getCity() + buyer.getZip() + buyer.getPhone();
+    }
+
+    public void reset() {
+        rate = 1;
+    }
+}`;
+
+  // The smells each analyzer reports directly, and the ones SmellRules derives
+  // from its metrics after a JSON round trip (as the browser receives them)
+  const compare = async (thresholds, metricsThresholds = thresholds) => {
+    const measuring = new CodeSmellDetector({ smells: allSmells, thresholds: metricsThresholds });
+    const detector = new CodeSmellDetector({ smells: allSmells, thresholds });
+    const parseResult = detector.parseFile(javaCode, '.java');
+
+    for (const [smellType, analyzer] of Object.entries(detector.analyzers)) {
+      const metrics = JSON.parse(JSON.stringify(await measuring.analyzers[smellType].measure(parseResult, javaCode, 'Billing.java')));
+      const expected = await analyzer.analyze(parseResult, javaCode, 'Billing.java');
+
+      expect({ smellType, smells: SmellRules.evaluate(smellType, metrics, thresholds) }).toEqual({ smellType, smells: expected });
+    }
+  };
+
+  test('should derive the same smells from metrics as the analyzers report', async () => {
+    await compare({});
+    await compare({
+      LongMethod: 5,
+      LongMethodCyclomatic: 2,
+      LargeParameterList: 3,
+      GodClassMethods: 2,
+      GodClassFields: 2,
+      DuplicatedCodeSimilarity: 0.7,
+      FeatureEnvyThreshold: 2
+    });
+  });
+
+  test('should re-apply other thresholds to metrics measured once', async () => {
+    await compare({ LongMethod: 8, LargeParameterList: 2, FeatureEnvyThreshold: 5, DuplicatedCodeSimilarity: 0.95 }, {});
+    await compare({ GodClassMethods: 1, DuplicatedCodeSimilarity: 0.75 }, {});
+  });
+
+  test('should map the web UI form fields and fall back to defaults', () => {
+    const thresholds = SmellRules.thresholdsFromSettings(
+      { threshold_longMethod: '25', threshold_godClass: '', threshold_featureEnvy: 'x' },
+      { ...SmellRules.DEFAULT_THRESHOLDS, GodClassMethods: 12 }
+    );
+
+    expect(thresholds.LongMethod).toBe(25);
+    expect(thresholds.GodClassMethods).toBe(12);
+    expect(thresholds.FeatureEnvyThreshold).toBe(SmellRules.DEFAULT_THRESHOLDS.FeatureEnvyThreshold);
+    expect(thresholds.LongMethodCyclomatic).toBe(SmellRules.DEFAULT_THRESHOLDS.LongMethodCyclomatic);
+  });
+
+  test('should stream metrics alongside the smells they produce', async () => {
+    const detector = new CodeSmellDetector({ smells: allSmells, thresholds: { LongMethod: 5 } });
+    const perAnalyzer = [];
+
+    for await (const { smellType, smells, metrics } of detector.analyzeStream(javaCode, 'Billing.java', { metrics: true })) {
+      expect(metrics).toBeDefined();
+      perAnalyzer.push([smellType, smells]);
+    }
+
+    const streamed = detector.buildResult(perAnalyzer, javaCode, 'Billing.java');
+    const direct = await detector.analyzeContent(javaCode, 'Billing.java');
+    expect(streamed.summary.totalSmells).toBe(direct.summary.totalSmells);
+    expect(new Set(streamed.activeSmells)).toEqual(new Set(direct.activeSmells));
+  });
+});
+
+describe('DuplicatedCodeAnalyzer.levenshteinDistance', () => {
+  const analyzer = new DuplicatedCodeAnalyzer({});
+
+  test('should be exact within maxDistance and cap the result beyond it', () => {
+    expect(analyzer.levenshteinDistance('kitten', 'sitting')).toBe(3);
+    expect(analyzer.levenshteinDistance('kitten', 'sitting', 3)).toBe(3);
+    expect(analyzer.levenshteinDistance('kitten', 'sitting', 2)).toBe(3);
+    expect(analyzer.levenshteinDistance('abcdef', 'fedcba', 1)).toBe(2);
+    expect(analyzer.levenshteinDistance('', 'abc')).toBe(3);
+    expect(analyzer.levenshteinDistance('short', 'a much longer string', 4)).toBe(5);
+  });
+});
@@ -0,0 +1,122 @@
+const SymbolIndex = require('../src/symbolIndex');
+const FeatureEnvyAnalyzer = require('../src/analyzers/featureEnvy');
+const CodeSmellDetector = require('../src/detector');
+const fs = require('fs');
+const path = require('path');
+
+describe('SymbolIndex', () => {
+  const tempDir = path.join(__dirname, 'temp-index');
+  const cacheFile = path.join(tempDir, '.code-smell-index.json');
+
+  const orderCode = `
+public class Order {
+    private Customer customer;
+    private double total;
+
+    public double getTotal() { return total; }
+    public double getDiscount() { return 0; }
+}
+`;
+
+  const invoiceCode = `
+public class Invoice {
+    private Order order;
+    private String note;
+
+    public double compute(Order other) {
+        double a = order.getTotal() + order.getDiscount();
+        double b = other.getTotal();
+        return a + b;
+    }
+}
+`;
+
+  beforeEach(() => {
+    fs.mkdirSync(tempDir, { recursive: true });
+    fs.writeFileSync(path.join(tempDir, 'Order.java'), orderCode);
+    fs.writeFileSync(path.join(tempDir, 'Invoice.java'), invoiceCode);
+  });
+
+  afterEach(() => {
+    fs.rmSync(tempDir, { recursive: true, force: true });
+  });
+
+  const files = () => ['Order.java', 'Invoice.java'].map(name => path.join(tempDir, name));
+
+  test('should index classes with fields, methods and field types', async () => {
+    const index = new SymbolIndex(tempDir);
+    await index.build(files());
+
+    expect(index.hasClass('Order')).toBe(true);
+    expect(index.hasClass('Invoice')).toBe(true);
+    expect(index.getClass('Order').methods).toContain('getTotal');
+    expect(index.fieldType('Invoice', 'order')).toBe('Order');
+    expect(index.fieldType('Order', 'customer')).toBe('Customer');
+  });
+
+  test('should reuse cached entries and reparse only changed files', async () => {
+    const first = await new SymbolIndex(tempDir, cacheFile).build(files());
+    expect(first.reparsed).toBe(2);
+
+    const second = await new SymbolIndex(tempDir, cacheFile).build(files());
+    expect(second.reparsed).toBe(0);
+
+    fs.writeFileSync(path.join(tempDir, 'Order.java'), orderCode.replace('Order', 'PurchaseOrder'));
+    const index = new SymbolIndex(tempDir, cacheFile);
+    const third = await index.build(files());
+    expect(third.reparsed).toBe(1);
+    expect(index.hasClass('PurchaseOrder')).toBe(true);
+    expect(index.hasClass('Order')).toBe(false);
+  });
+
+  test('should keep the default cache outside the analyzed tree, one per directory', () => {
+    const defaultCache = SymbolIndex.cacheFileFor(tempDir);
+    if (!defaultCache) return;
+
+    expect(defaultCache.startsWith(tempDir)).toBe(false);
+    expect(SymbolIndex.cacheFileFor(path.join(tempDir, '.'))).toBe(defaultCache);
+    expect(SymbolIndex.cacheFileFor(path.join(tempDir, 'other'))).not.toBe(defaultCache);
+  });
+
+  test('should let FeatureEnvy resolve declared types from other files', async () => {
+    const index = new SymbolIndex(tempDir);
+    await index.build(files());
+
+    const detector = new CodeSmellDetector({ smells: { FeatureEnvy: true }, thresholds: {} });
+    const parseResult = detector.parseFile(invoiceCode, '.java');
+    const analyzer = new FeatureEnvyAnalyzer({ FeatureEnvyThreshold: 3 }, index);
+
+    const smells = await analyzer.analyze(parseResult, invoiceCode, 'Invoice.java');
+
+    expect(smells).toHaveLength(1);
+    expect(smells[0].enviedClass).toBe('Order');
+  });
+
+  test('should only report classes declared in the file when there is no index', async () => {
+    const readSample = (...parts) => fs.readFileSync(path.join(__dirname, '..', ...parts), 'utf8');
+    const detector = new CodeSmellDetector({ smells: { FeatureEnvy: true }, thresholds: {} });
+
+    const java = await detector.analyzeContent(readSample('samples', 'SmellySample.java'), 'SmellySample.java');
+    // No "if()" pseudo-methods, and no envy of locals ("Errors") or numbers ("0")
+    expect(java.detected.map(smell => `${smell.methodName} -> ${smell.enviedClass}`))
+      .toEqual(['logUserRegistration -> User']);
+
+    const cart = await detector.analyzeContent(readSample('test-programs', 'java', 'ShoppingCartManager.java'), 'ShoppingCartManager.java');
+    expect(cart.detected.map(smell => smell.methodName)).toEqual(['sendOrderConfirmation']);
+
+    const python = await detector.analyzeContent(readSample('test-programs', 'python', 'grade_manager.py'), 'grade_manager.py');
+    expect(python.detected).toEqual([]);
+  });
+
+  test('should ignore member access on types outside the project', async () => {
+    const index = new SymbolIndex(tempDir);
+    await index.build(files());
+
+    const analyzer = new FeatureEnvyAnalyzer({ FeatureEnvyThreshold: 3 }, index);
+    const scope = new Map([['note', 'String'], ['order', 'Order']]);
+
+    expect(analyzer.resolveObjectClass('note', scope)).toBeNull();
+    expect(analyzer.resolveObjectClass('order', scope)).toBe('Order');
+    expect(analyzer.resolveObjectClass('Order', scope)).toBe('Order');
+  });
+});
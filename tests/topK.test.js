@@ -0,0 +1,98 @@
+const { TopKCollector, BoundedMinHeap, compareSmells } = require('../src/topK');
+const CodeSmellDetector = require('../src/detector');
+
+describe('TopKCollector', () => {
+  const smell = (type, severity, magnitude, lines = '1') => ({ type, severity, magnitude, lines });
+
+  test('should rank by severity before magnitude', () => {
+    expect(compareSmells(smell('LongMethod', 'high', 1.1), smell('LongMethod', 'medium', 9))).toBeGreaterThan(0);
+    expect(compareSmells(smell('LongMethod', 'low', 1.4), smell('LongMethod', 'low', 1.2))).toBeGreaterThan(0);
+  });
+
+  test('should rank smells of different types by their ratio to the threshold', async () => {
+    const SmellRules = require('../src/smellRules');
+    const MagicNumbersAnalyzer = require('../src/analyzers/magicNumbers');
+    const thresholds = SmellRules.resolveThresholds({ LongMethod: 40, DuplicatedCodeSimilarity: 0.8 });
+
+    // All low severity: 1.1x the length threshold, 0.9 / 0.8 similarity, two numbers
+    const longMethod = SmellRules.longMethod({ name: 'run', startLine: 1, endLine: 44, lineCount: 44 }, thresholds);
+    const duplicate = SmellRules.duplicatedBlocks({ i: 0, j: 10, similarity: 0.9 }, 5, thresholds);
+    const [magicNumbers] = await new MagicNumbersAnalyzer({}).analyze({ lines: ['x = 37 * 41;'] });
+    // Medium severity: 1.9x the length threshold against three numbers on a line
+    const mediumMethod = SmellRules.longMethod({ name: 'big', startLine: 1, endLine: 76, lineCount: 76 }, thresholds);
+    const [mediumNumbers] = await new MagicNumbersAnalyzer({}).analyze({ lines: ['x = 37 * 41 + 43;'] });
+
+    expect([longMethod, duplicate, magicNumbers].map(s => s.severity)).toEqual(['low', 'low', 'low']);
+    expect(compareSmells(duplicate, longMethod)).toBeGreaterThan(0);
+    expect(compareSmells(longMethod, magicNumbers)).toBeGreaterThan(0);
+    expect(mediumNumbers.severity).toBe('medium');
+    expect(compareSmells(mediumMethod, mediumNumbers)).toBeGreaterThan(0);
+  });
+
+  test('should keep only the K worst smells', () => {
+    const collector = new TopKCollector(2);
+    collector.offer(smell('LongMethod', 'low', 1.2), 'a.py');
+    collector.offer(smell('GodClass', 'high', 2.5), 'b.py');
+    collector.offer(smell('MagicNumbers', 'medium', 3), 'c.py');
+    collector.offer(smell('LargeParameterList', 'low', 1.8), 'd.py');
+
+    const top = collector.results();
+
+    expect(top).toHaveLength(2);
+    expect(top.map(s => s.type)).toEqual(['GodClass', 'MagicNumbers']);
+    expect(top[0].filePath).toBe('b.py');
+  });
+
+  test('should keep K smells per type when requested', () => {
+    const collector = new TopKCollector(1, true);
+    collector.offer(smell('LongMethod', 'low', 1.2), 'a.py');
+    collector.offer(smell('LongMethod', 'high', 3), 'a.py');
+    collector.offer(smell('MagicNumbers', 'low', 1), 'b.py');
+
+    const top = collector.results();
+
+    expect(top).toHaveLength(2);
+    expect(top).toEqual(expect.arrayContaining([
+      expect.objectContaining({ type: 'LongMethod', severity: 'high' }),
+      expect.objectContaining({ type: 'MagicNumbers' })
+    ]));
+  });
+
+  test('should reject candidates below the heap floor once full', () => {
+    const collector = new TopKCollector(1);
+    expect(collector.admits('LongMethod', 'low', 1.1)).toBe(true);
+
+    collector.offer(smell('LongMethod', 'medium', 1.6), 'a.py');
+
+    expect(collector.admits('LongMethod', 'low', 5)).toBe(false);
+    expect(collector.admits('LongMethod', 'medium', 1.5)).toBe(false);
+    expect(collector.admits('LongMethod', 'medium', 1.7)).toBe(true);
+    expect(collector.admits('GodClass', 'high', 2)).toBe(true);
+  });
+
+  test('should let analyzers skip smells that cannot enter the heap', async () => {
+    const collector = new TopKCollector(1);
+    collector.offer(smell('LongMethod', 'high', 10), 'big.py');
+
+    const detector = new CodeSmellDetector(
+      { smells: { LongMethod: true }, thresholds: { LongMethod: 2 } },
+      { topK: collector }
+    );
+    const parseResult = {
+      functions: [{ name: 'small', startLine: 1, endLine: 4, lineCount: 4, parameters: [] }]
+    };
+
+    const smells = await detector.analyzers.LongMethod.analyze(parseResult, '', 'small.py');
+    expect(smells).toHaveLength(0);
+  });
+
+  test('BoundedMinHeap should never exceed its capacity', () => {
+    const heap = new BoundedMinHeap(3);
+    for (let i = 0; i < 20; i++) {
+      heap.offer(smell('MagicNumbers', 'low', i % 7, String(i)));
+    }
+
+    expect(heap.items).toHaveLength(3);
+    expect(heap.sorted().map(s => s.magnitude)).toEqual([6, 6, 5]);
+  });
+});
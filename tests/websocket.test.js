@@ -0,0 +1,89 @@
+const { EventEmitter } = require('events');
+const { WebSocketConnection, attachWebSocketServer } = require('../src/web/websocket');
+
+describe('WebSocketConnection', () => {
+  // A net.Socket stand-in that records what the server writes
+  const fakeSocket = () => {
+    const socket = new EventEmitter();
+    socket.written = [];
+    socket.setNoDelay = () => {};
+    socket.write = data => socket.written.push(data);
+    socket.end = data => {
+      if (data) socket.written.push(data);
+      socket.ended = true;
+    };
+    return socket;
+  };
+
+  const frame = (opcode, payload, { fin = true, masked = true } = {}) => {
+    const header = Buffer.from([(fin ? 0x80 : 0) | opcode, (masked ? 0x80 : 0) | 126, 0, 0]);
+    header.writeUInt16BE(payload.length, 2);
+    if (!masked) return Buffer.concat([header, payload]);
+
+    const mask = Buffer.from([1, 2, 3, 4]);
+    const body = Buffer.from(payload.map((byte, i) => byte ^ mask[i % 4]));
+    return Buffer.concat([header, mask, body]);
+  };
+
+  const closeCode = socket => socket.written[socket.written.length - 1].readUInt16BE(2);
+
+  test('should reassemble masked fragments into one message', () => {
+    const socket = fakeSocket();
+    const connection = new WebSocketConnection(socket);
+    const messages = [];
+    connection.on('message', message => messages.push(message));
+
+    socket.emit('data', frame(0x1, Buffer.from('hello '), { fin: false }));
+    socket.emit('data', frame(0x0, Buffer.from('world')));
+
+    expect(messages).toEqual(['hello world']);
+  });
+
+  test('should fail the connection on unmasked client frames', () => {
+    const socket = fakeSocket();
+    const connection = new WebSocketConnection(socket);
+    const messages = [];
+    connection.on('message', message => messages.push(message));
+
+    socket.emit('data', frame(0x1, Buffer.from('hi'), { masked: false }));
+
+    expect(messages).toEqual([]);
+    expect(connection.closed).toBe(true);
+    expect(closeCode(socket)).toBe(1002);
+  });
+
+  test('should only upgrade requests from the server\'s own origin', () => {
+    const server = new EventEmitter();
+    const connections = [];
+    attachWebSocketServer(server, '/api/live', connection => connections.push(connection));
+
+    const upgrade = origin => {
+      const socket = fakeSocket();
+      const headers = { host: 'localhost:3000', upgrade: 'websocket', 'sec-websocket-key': 'dGhlIHNhbXBsZSBub25jZQ==' };
+      if (origin) headers.origin = origin;
+      server.emit('upgrade', { url: '/api/live', headers }, socket);
+      return String(socket.written[0]).split('\r\n')[0];
+    };
+
+    expect(upgrade('http://localhost:3000')).toBe('HTTP/1.1 101 Switching Protocols');
+    expect(upgrade(null)).toBe('HTTP/1.1 101 Switching Protocols');
+    expect(upgrade('https://evil.example')).toBe('HTTP/1.1 403 Forbidden');
+    expect(upgrade('http://localhost:8080')).toBe('HTTP/1.1 403 Forbidden');
+    expect(connections).toHaveLength(2);
+  });
+
+  test('should limit the total size of a fragmented message', () => {
+    const socket = fakeSocket();
+    const connection = new WebSocketConnection(socket);
+    const chunk = Buffer.alloc(60000, 0x61);
+
+    // 90 fragments of 60 KB pass the 5 MB limit although each frame is small
+    for (let i = 0; i < 90 && !connection.closed; i++) {
+      socket.emit('data', frame(i === 0 ? 0x1 : 0x0, chunk, { fin: false }));
+    }
+
+    expect(connection.closed).toBe(true);
+    expect(closeCode(socket)).toBe(1009);
+    expect(connection.fragmentsLength).toBeLessThanOrEqual(5 * 1024 * 1024);
+  });
+});